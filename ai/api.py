@@ -58,6 +58,14 @@ class EmailAnalysis(BaseModel):
     features: dict
 
 
+class BatchEmailRequest(BaseModel):
+    email_texts: list[str]
+
+
+class BatchEmailAnalysis(BaseModel):
+    results: list[EmailAnalysis]
+
+
 @app.post("/analyze-email", response_model=EmailAnalysis)
 async def analyze_email(request: EmailRequest):
     if not all([components.preprocessor, components.model, components.tfidf]):
@@ -83,5 +91,36 @@ async def analyze_email(request: EmailRequest):
         raise HTTPException(status_code=500, detail=f"Analysis failed: {str(e)}")
 
 
+@app.post("/analyze-batch", response_model=BatchEmailAnalysis)
+async def analyze_batch(request: BatchEmailRequest):
+    if not all([components.preprocessor, components.model, components.tfidf]):
+        raise HTTPException(status_code=500, detail="Model components not initialized")
+
+    if not request.email_texts:
+        return BatchEmailAnalysis(results=[])
+
+    try:
+        cleaned_texts = [components.preprocessor.preprocess_text(text) for text in request.email_texts]
+        features = [components.preprocessor.extract_features(text) for text in request.email_texts]
+
+        # one transform and one predict_proba call for the whole batch
+        text_features = components.tfidf.transform(cleaned_texts)
+        X = np.hstack((text_features.toarray(), np.array([list(f.values()) for f in features])))
+
+        probabilities = components.model.predict_proba(X)[:, 1]
+
+        return BatchEmailAnalysis(results=[
+            EmailAnalysis(
+                probability=float(probability),
+                is_phishing=bool(probability >= 0.5),
+                features=email_features
+            )
+            for probability, email_features in zip(probabilities, features)
+        ])
+
+    except Exception as e:
+        raise HTTPException(status_code=500, detail=f"Analysis failed: {str(e)}")
+
+
 if __name__ == "__main__":
     uvicorn.run(app, host="0.0.0.0", port=8000)
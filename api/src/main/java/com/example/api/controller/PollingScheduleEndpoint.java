@@ -0,0 +1,38 @@
+package com.example.api.controller;
+
+import java.util.*;
+import com.example.api.dto.PollingScheduleEntry;
+import com.example.api.service.AdaptivePollingScheduler;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "polling")
+public class PollingScheduleEndpoint {
+
+    private final AdaptivePollingScheduler pollingScheduler;
+
+    public PollingScheduleEndpoint(AdaptivePollingScheduler pollingScheduler) {
+        this.pollingScheduler = pollingScheduler;
+    }
+
+    @ReadOperation
+    public Map<String, Object> schedule() {
+        List<PollingScheduleEntry> entries = pollingScheduler.getSchedule();
+
+        // how many polls are due in each of the coming minutes
+        long now = System.currentTimeMillis();
+        Map<Long, Integer> pollsPerMinute = new TreeMap<>();
+        for (PollingScheduleEntry entry : entries) {
+            long minute = Math.max(entry.nextPollAt().getTime() - now, 0) / 60000;
+            pollsPerMinute.merge(minute, 1, Integer::sum);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("mailboxes", entries.size());
+        response.put("pollsPerMinute", pollsPerMinute);
+        response.put("schedule", entries);
+        return response;
+    }
+}
@@ -0,0 +1,3 @@
+package com.example.api.dto;
+
+public record AttachmentInfo(String fileName, String mimeType, int size) { }
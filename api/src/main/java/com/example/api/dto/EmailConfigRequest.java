@@ -1,6 +1,7 @@
 package com.example.api.dto;
 
 import java.util.Map;
+import com.example.api.model.Mailbox;
 
 public record EmailConfigRequest(String host, String port, String protocol, String username, String userId) {
 
@@ -22,6 +23,13 @@ public record EmailConfigRequest(String host, String port, String protocol, Stri
         this.userId = userId;
     }
 
+    /**
+     * Rebuilds the connection config of a stored mailbox, the same way the client sends it.
+     */
+    public static EmailConfigRequest fromMailbox(Mailbox mailbox) {
+        return new EmailConfigRequest(mailbox.getType(), null, null, mailbox.getEmail(), mailbox.getUserId());
+    }
+
     private static String resolveHost(String host) {
         return HOST_MAPPING.getOrDefault(host, host);
     }
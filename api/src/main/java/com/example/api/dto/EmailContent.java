@@ -4,8 +4,15 @@ import javax.mail.Address;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Multipart;
-import javax.mail.BodyPart;
+import javax.mail.Part;
+import javax.mail.internet.ContentType;
+import javax.mail.internet.MimeUtility;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import com.example.api.exception.EmailProcessingException;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
@@ -18,16 +25,30 @@ public record EmailContent(
         String messageId,
         String content,
         String subject,
-        Address[] from
+        Address[] from,
+        List<AttachmentInfo> attachments
 ) {
+    // Text beyond this is not needed for the scan, and IMAP partial fetch stops downloading there
+    private static final int MAX_TEXT_PART_BYTES = 512 * 1024;
+
+    public EmailContent(String username, String currentUserId, String messageId, String content, String subject,
+                        Address[] from) {
+        this(username, currentUserId, messageId, content, subject, from, List.of());
+    }
+
     public static EmailContent fromMessage(Message message, String username, String currentUserId, String messageId) {
         try {
             if (message == null) {
                 throw new IllegalArgumentException("Message cannot be null");
             }
 
-            String extractedContent = extractContent(message);
+            ExtractedParts parts = new ExtractedParts();
+            collectParts(message, parts);
+            String extractedContent = parts.content();
             log.info("Successfully extracted content for message: {}", extractedContent);
+            if (!parts.attachments.isEmpty()) {
+                log.info("Skipped {} attachments for message {}: {}", parts.attachments.size(), messageId, parts.attachments);
+            }
 
             return new EmailContent(
                     username,
@@ -35,7 +56,8 @@ public record EmailContent(
                     messageId,
                     extractedContent,
                     message.getSubject(),
-                    message.getFrom()
+                    message.getFrom(),
+                    List.copyOf(parts.attachments)
             );
         } catch (MessagingException e) {
             log.error("Failed to process email message with ID: {}. Error: {}", messageId, e.getMessage(), e);
@@ -49,78 +71,71 @@ public record EmailContent(
         }
     }
 
-    private static String extractContent(Message message) throws MessagingException, IOException {
-        try {
-            Object content = message.getContent();
+    private static final class ExtractedParts {
+        private String plainText;
+        private String htmlContent;
+        private final List<AttachmentInfo> attachments = new ArrayList<>();
 
-            if (content instanceof String) {
-                return handleStringContent(message, (String) content);
-            } else if (content instanceof Multipart) {
-                return extractMultipartContent((Multipart) content);
+        private String content() {
+            if (plainText == null && htmlContent == null) {
+                log.warn("No text or HTML content found in message");
             }
-
-            log.warn("Unsupported content type: {}", content.getClass().getName());
-            return "";
-        } catch (MessagingException | IOException e) {
-            log.error("Error extracting content from message: {}", e.getMessage());
-            throw e;
+            return htmlContent != null ? htmlContent : (plainText != null ? plainText : "");
         }
     }
 
-    private static String handleStringContent(Message message, String content) throws MessagingException {
+    /**
+     * Walks the MIME tree using only the structure (BODYSTRUCTURE for IMAP messages) and downloads
+     * just the first text/plain and text/html parts. Everything else is recorded as attachment metadata.
+     */
+    private static void collectParts(Part part, ExtractedParts parts) throws MessagingException, IOException {
         try {
-            String contentType = message.getContentType().toLowerCase();
-
-            if (contentType.contains("text/plain")) {
-                return content;
-            } else if (contentType.contains("text/html")) {
-                return cleanHtmlContent(content);
+            boolean isAttachment = Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition()) || part.getFileName() != null;
+
+            if (part.isMimeType("multipart/*") && !isAttachment) {
+                Multipart multipart = (Multipart) part.getContent();
+                for (int i = 0; i < multipart.getCount(); i++) {
+                    Part bodyPart = multipart.getBodyPart(i);
+                    if (bodyPart == null) {
+                        log.warn("Null body part found at index: {}", i);
+                        continue;
+                    }
+                    collectParts(bodyPart, parts);
+                }
+            } else if (part.isMimeType("text/plain") && !isAttachment && parts.plainText == null) {
+                parts.plainText = readText(part);
+            } else if (part.isMimeType("text/html") && !isAttachment && parts.htmlContent == null) {
+                parts.htmlContent = cleanHtmlContent(readText(part));
+            } else if (!part.isMimeType("text/*") || isAttachment) {
+                parts.attachments.add(new AttachmentInfo(
+                        part.getFileName(),
+                        new ContentType(part.getContentType()).getBaseType(),
+                        part.getSize()
+                ));
             }
-
-            log.warn("Unhandled string content type: {}", contentType);
-            return content;
-        } catch (MessagingException e) {
-            log.error("Error determining content type: {}", e.getMessage());
+        } catch (MessagingException | IOException e) {
+            log.error("Error processing message part: {}", e.getMessage());
             throw e;
         }
     }
 
-    private static String extractMultipartContent(Multipart multipart) throws MessagingException, IOException {
-        try {
-            String plainText = null;
-            String htmlContent = null;
-
-            for (int i = 0; i < multipart.getCount(); i++) {
-                BodyPart bodyPart = multipart.getBodyPart(i);
-                if (bodyPart == null) {
-                    log.warn("Null body part found at index: {}", i);
-                    continue;
-                }
-
-                String contentType = bodyPart.getContentType().toLowerCase();
-                Object content = bodyPart.getContent();
-
-                if (content == null) {
-                    log.warn("Null content found in body part at index: {}", i);
-                    continue;
-                }
-
-                if (contentType.contains("text/plain")) {
-                    plainText = content.toString();
-                } else if (contentType.contains("text/html")) {
-                    htmlContent = cleanHtmlContent(content.toString());
-                }
-            }
+    private static String readText(Part part) throws MessagingException, IOException {
+        try (InputStream in = part.getInputStream()) {
+            byte[] bytes = in.readNBytes(MAX_TEXT_PART_BYTES);
+            return new String(bytes, resolveCharset(part));
+        }
+    }
 
-            if (plainText == null && htmlContent == null) {
-                log.warn("No text or HTML content found in multipart message");
+    private static Charset resolveCharset(Part part) {
+        try {
+            String charset = new ContentType(part.getContentType()).getParameter("charset");
+            if (charset != null) {
+                return Charset.forName(MimeUtility.javaCharset(charset));
             }
-
-            return htmlContent != null ? htmlContent : (plainText != null ? plainText : "");
-        } catch (MessagingException | IOException e) {
-            log.error("Error processing multipart content: {}", e.getMessage());
-            throw e;
+        } catch (Exception e) {
+            log.warn("Unsupported charset in content type, falling back to UTF-8: {}", e.getMessage());
         }
+        return StandardCharsets.UTF_8;
     }
 
     private static String cleanHtmlContent(String html) {
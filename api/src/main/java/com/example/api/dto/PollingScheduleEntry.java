@@ -0,0 +1,5 @@
+package com.example.api.dto;
+
+import java.util.Date;
+
+public record PollingScheduleEntry(String mailbox, long intervalMillis, double messagesPerHour, Date nextPollAt) { }
@@ -0,0 +1,16 @@
+package com.example.api.exception;
+
+public class HostCapacityException extends RuntimeException {
+
+    public HostCapacityException(Throwable cause) {
+        super(cause);
+    }
+
+    public HostCapacityException(String message) {
+        super(message);
+    }
+
+    public HostCapacityException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.api.exception;
+
+public class MailboxNotFoundException extends RuntimeException {
+
+    public MailboxNotFoundException(Throwable cause) {
+        super(cause);
+    }
+
+    public MailboxNotFoundException(String message) {
+        super(message);
+    }
+
+    public MailboxNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.api.model;
+
+import java.util.Date;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "cluster_nodes")
+public class ClusterNode {
+
+    @Id
+    private String nodeId;
+
+    private Date lastHeartbeat;
+}
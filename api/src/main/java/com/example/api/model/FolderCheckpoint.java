@@ -0,0 +1,31 @@
+package com.example.api.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+@Data
+@Entity
+@Table(name = "folder_checkpoints", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"mailbox_id", "folderName"})
+})
+public class FolderCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String folderName;
+
+    private long uidValidity;
+
+    private long lastUid;
+
+    private long highestModSeq;
+
+    @ManyToOne
+    @JoinColumn(name = "mailbox_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Mailbox mailbox;
+}
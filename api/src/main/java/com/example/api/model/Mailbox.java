@@ -2,6 +2,7 @@ package com.example.api.model;
 
 import java.util.List;
 import com.example.api.config.AESConverter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
@@ -27,6 +28,15 @@ public class Mailbox {
 
     private String userId;
 
+    @JsonIgnore
+    private boolean monitored;
+
+    // IMAP folders to monitor; entries starting with a backslash name a SPECIAL-USE attribute such as \Junk
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "mailbox_folders", joinColumns = @JoinColumn(name = "mailbox_id"))
+    @Column(name = "folder_name")
+    private List<String> folders;
+
     @OneToMany(mappedBy = "mailbox", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private List<ScanLog> scanLogs;
@@ -0,0 +1,26 @@
+package com.example.api.model;
+
+import java.util.Date;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+@Data
+@Entity
+@Table(name = "mailbox_leases")
+public class MailboxLease {
+
+    @Id
+    @Column(name = "mailbox_id")
+    private Long mailboxId;
+
+    @OneToOne
+    @JoinColumn(name = "mailbox_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Mailbox mailbox;
+
+    private String ownerId;
+
+    private Date expiresAt;
+}
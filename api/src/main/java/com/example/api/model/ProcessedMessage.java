@@ -0,0 +1,31 @@
+package com.example.api.model;
+
+import java.util.Date;
+import jakarta.persistence.*;
+import lombok.Data;
+
+@Data
+@Entity
+@Table(name = "processed_messages", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_processed_messages_mailbox_hash", columnNames = {"mailbox_id", "message_hash"})
+}, indexes = {
+        @Index(name = "idx_processed_messages_processed_at", columnList = "processed_at")
+})
+public class ProcessedMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "mailbox_id", nullable = false)
+    private Long mailboxId;
+
+    @Column(name = "message_hash", nullable = false)
+    private long messageHash;
+
+    @Column(name = "scan_log_id")
+    private Long scanLogId;
+
+    @Column(name = "processed_at", nullable = false)
+    private Date processedAt;
+}
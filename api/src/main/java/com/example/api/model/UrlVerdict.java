@@ -0,0 +1,40 @@
+package com.example.api.model;
+
+import java.util.Date;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "url_verdicts", indexes = {
+        @Index(name = "idx_url_verdicts_expires_at", columnList = "expires_at")
+})
+public class UrlVerdict {
+
+    public static final int URL_LENGTH = 2048;
+
+    // SHA-256 of the source and the normalized URL, which can be longer than an index allows
+    @Id
+    @Column(name = "verdict_key", length = 64)
+    private String verdictKey;
+
+    @Column(nullable = false)
+    private String source;
+
+    // informational only, truncated to the column; the row is identified by verdictKey
+    @Column(length = URL_LENGTH, nullable = false)
+    private String url;
+
+    @Column(nullable = false)
+    private boolean malicious;
+
+    @Column(name = "lookup_millis", nullable = false)
+    private long lookupMillis;
+
+    @Column(name = "expires_at", nullable = false)
+    private Date expiresAt;
+}
@@ -0,0 +1,14 @@
+package com.example.api.repository;
+
+import java.util.Date;
+import com.example.api.model.ClusterNode;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ClusterNodeRepository extends JpaRepository<ClusterNode, String> {
+
+    long countByLastHeartbeatAfter(Date since);
+
+    @Transactional
+    void deleteByLastHeartbeatBefore(Date before);
+}
@@ -0,0 +1,14 @@
+package com.example.api.repository;
+
+import java.util.Optional;
+import com.example.api.model.FolderCheckpoint;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface FolderCheckpointRepository extends JpaRepository<FolderCheckpoint, Long> {
+
+    Optional<FolderCheckpoint> findByMailboxIdAndFolderName(Long mailboxId, String folderName);
+
+    @Transactional
+    void deleteByMailboxIdAndFolderName(Long mailboxId, String folderName);
+}
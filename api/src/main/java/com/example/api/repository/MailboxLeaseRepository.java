@@ -0,0 +1,42 @@
+package com.example.api.repository;
+
+import java.util.Date;
+import java.util.List;
+import com.example.api.model.MailboxLease;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface MailboxLeaseRepository extends JpaRepository<MailboxLease, Long> {
+
+    List<MailboxLease> findByOwnerId(String ownerId);
+
+    @Query("select l.mailbox.email from MailboxLease l where l.mailbox.userId = :userId and l.expiresAt > :now")
+    List<String> findLeasedEmails(@Param("userId") String userId, @Param("now") Date now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "insert into mailbox_leases (mailbox_id, owner_id, expires_at) values (:mailboxId, :ownerId, :expiresAt)",
+            nativeQuery = true)
+    void insertLease(@Param("mailboxId") Long mailboxId, @Param("ownerId") String ownerId,
+                     @Param("expiresAt") Date expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("update MailboxLease l set l.ownerId = :ownerId, l.expiresAt = :expiresAt " +
+            "where l.mailboxId = :mailboxId and (l.expiresAt < :now or l.ownerId = :ownerId)")
+    int takeOver(@Param("mailboxId") Long mailboxId, @Param("ownerId") String ownerId,
+                 @Param("expiresAt") Date expiresAt, @Param("now") Date now);
+
+    @Transactional
+    @Modifying
+    @Query("update MailboxLease l set l.expiresAt = :expiresAt where l.ownerId = :ownerId")
+    int renew(@Param("ownerId") String ownerId, @Param("expiresAt") Date expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from MailboxLease l where l.mailboxId = :mailboxId and l.ownerId = :ownerId")
+    int release(@Param("mailboxId") Long mailboxId, @Param("ownerId") String ownerId);
+}
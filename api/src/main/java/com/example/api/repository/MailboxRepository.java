@@ -5,6 +5,9 @@ import java.util.Optional;
 import com.example.api.model.Mailbox;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface MailboxRepository extends JpaRepository<Mailbox, Long> {
 
@@ -16,4 +19,11 @@ public interface MailboxRepository extends JpaRepository<Mailbox, Long> {
     boolean existsByEmailAndUserId(String email, String userId);
 
     Optional<Mailbox> findByEmailAndUserId(String email, String userId);
+
+    List<Mailbox> findByMonitoredTrue();
+
+    @Transactional
+    @Modifying
+    @Query("update Mailbox m set m.monitored = :monitored where m.id = :id")
+    int updateMonitored(@Param("id") Long id, @Param("monitored") boolean monitored);
 }
@@ -0,0 +1,19 @@
+package com.example.api.repository;
+
+import java.util.Date;
+import com.example.api.model.ProcessedMessage;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ProcessedMessageRepository extends JpaRepository<ProcessedMessage, Long> {
+
+    boolean existsByMailboxIdAndMessageHash(Long mailboxId, long messageHash);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ProcessedMessage p where p.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") Date before);
+}
@@ -0,0 +1,17 @@
+package com.example.api.repository;
+
+import java.util.Date;
+import com.example.api.model.UrlVerdict;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface UrlVerdictRepository extends JpaRepository<UrlVerdict, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from UrlVerdict v where v.expiresAt < :before")
+    int deleteExpiredBefore(@Param("before") Date before);
+}
@@ -0,0 +1,116 @@
+package com.example.api.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import com.example.api.dto.PollingScheduleEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Works out when each polled mailbox should be checked next. The interval follows an exponentially
+ * weighted estimate of the mailbox's arrival rate: busy inboxes are polled more often, quiet ones
+ * back off towards the maximum. Every delay is jittered so mailboxes don't poll in lockstep.
+ */
+@Component
+public class AdaptivePollingScheduler {
+
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final double JITTER = 0.1;
+
+    private final long minInterval;
+    private final long maxInterval;
+    private final long initialInterval;
+    private final ConcurrentHashMap<String, PollingState> states = new ConcurrentHashMap<>();
+
+    public AdaptivePollingScheduler(@Value("${monitoring.polling.min-interval:15000}") long minInterval,
+                                    @Value("${monitoring.polling.max-interval:300000}") long maxInterval,
+                                    @Value("${monitoring.polling.initial-interval:60000}") long initialInterval) {
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.initialInterval = initialInterval;
+    }
+
+    private static final class PollingState {
+        private long interval;
+        private double messagesPerMilli;
+        private long lastPollAt;
+        private long nextPollAt;
+        private boolean phaseAssigned;
+    }
+
+    /**
+     * Registers the mailbox. The first cycle runs right away so the user sees the connection result.
+     * The phase of the following cycles is randomised in {@link #next(String, int)}.
+     */
+    public long start(String mailboxKey) {
+        long now = System.currentTimeMillis();
+        PollingState state = new PollingState();
+        state.interval = initialInterval;
+        // assume one message per initial interval, so quiet mailboxes back off gradually
+        state.messagesPerMilli = 1.0 / initialInterval;
+        state.lastPollAt = now;
+        state.nextPollAt = now;
+        states.put(mailboxKey, state);
+        return 0;
+    }
+
+    /**
+     * Records the outcome of a polling cycle and returns the delay until the next one.
+     */
+    public long next(String mailboxKey, int newMessages) {
+        long now = System.currentTimeMillis();
+        PollingState state = states.get(mailboxKey);
+        if (state == null) {
+            // monitoring was stopped while the cycle ran
+            return jitter(initialInterval, JITTER);
+        }
+
+        synchronized (state) {
+            long elapsed = Math.max(now - state.lastPollAt, 1);
+            double observedRate = (double) newMessages / elapsed;
+            state.messagesPerMilli = RATE_SMOOTHING * observedRate + (1 - RATE_SMOOTHING) * state.messagesPerMilli;
+
+            // aim for roughly one new message per cycle
+            long target = state.messagesPerMilli > 0 ? (long) (1 / state.messagesPerMilli) : maxInterval;
+            state.interval = Math.clamp(target, minInterval, maxInterval);
+            state.lastPollAt = now;
+
+            long delay;
+            if (state.phaseAssigned) {
+                delay = jitter(state.interval, JITTER);
+            } else {
+                // a random phase over a whole interval, so mailboxes started together don't poll together
+                delay = jitter(state.interval, 0.5);
+                state.phaseAssigned = true;
+            }
+            state.nextPollAt = now + delay;
+            return delay;
+        }
+    }
+
+    public void stop(String mailboxKey) {
+        states.remove(mailboxKey);
+    }
+
+    private long jitter(long interval, double spread) {
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-spread, spread);
+        return (long) (interval * factor);
+    }
+
+    public List<PollingScheduleEntry> getSchedule() {
+        List<PollingScheduleEntry> entries = new ArrayList<>();
+        states.forEach((mailboxKey, state) -> {
+            synchronized (state) {
+                entries.add(new PollingScheduleEntry(
+                        mailboxKey,
+                        state.interval,
+                        state.messagesPerMilli * 60 * 60 * 1000,
+                        new Date(state.nextPollAt)
+                ));
+            }
+        });
+        entries.sort(Comparator.comparing(PollingScheduleEntry::nextPollAt));
+        return entries;
+    }
+}
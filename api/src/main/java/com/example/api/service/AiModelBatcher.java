@@ -0,0 +1,164 @@
+package com.example.api.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.example.api.exception.AiModelException;
+import com.nimbusds.jose.shaded.gson.JsonArray;
+import com.nimbusds.jose.shaded.gson.JsonObject;
+import com.nimbusds.jose.shaded.gson.JsonParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Sends email texts to the AI model's {@code /analyze-batch} endpoint in batches shared by all scan workers.
+ * The first text after a quiet period opens a window of {@code batch-window} ms; the texts gathered until it
+ * closes, or until {@code batch-size} of them are waiting, are scored in one request, so the model vectorizes
+ * and predicts them together. Each caller's future completes with its own probability, or with -1 when
+ * the model answered with an error status.
+ */
+@Slf4j
+@Component
+public class AiModelBatcher {
+
+    private record PendingText(String text, long queuedAt, CompletableFuture<Float> result) { }
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-model-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String apiUrl;
+    private final long batchWindow;
+    private final int batchSize;
+
+    private List<PendingText> pending = new ArrayList<>();
+
+    private final Counter requests;
+    private final Counter texts;
+    private final DistributionSummary batchSizes;
+    private final Timer queueWait;
+    private final Timer requestDuration;
+
+    public AiModelBatcher(@Value("${scan.ai.batch-url:http://localhost:8000/analyze-batch}") String apiUrl,
+                          @Value("${scan.ai.batch-window:5}") long batchWindow,
+                          @Value("${scan.ai.batch-size:32}") int batchSize,
+                          MeterRegistry meterRegistry) {
+        this.apiUrl = apiUrl;
+        this.batchWindow = batchWindow;
+        this.batchSize = Math.max(1, batchSize);
+
+        this.requests = Counter.builder("ai.batch.requests").description("Batch requests sent to the AI model").register(meterRegistry);
+        this.texts = Counter.builder("ai.batch.texts").description("Email texts scored by the AI model").register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("ai.batch.size").description("Email texts per batch request").register(meterRegistry);
+        this.queueWait = Timer.builder("ai.batch.wait").description("Time a text waited for its batch to be sent").register(meterRegistry);
+        this.requestDuration = Timer.builder("ai.batch.duration").description("Duration of batch requests").register(meterRegistry);
+    }
+
+    /**
+     * Completes with the phishing probability of the text, -1 when the model could not score it, or
+     * exceptionally with an {@link AiModelException} when the model could not be reached.
+     */
+    public CompletableFuture<Float> analyze(String text) {
+        PendingText queued = new PendingText(text, System.nanoTime(), new CompletableFuture<>());
+        List<PendingText> full = null;
+        synchronized (this) {
+            boolean opensWindow = pending.isEmpty();
+            pending.add(queued);
+            if (pending.size() >= batchSize) {
+                full = takePending();
+            } else if (opensWindow) {
+                List<PendingText> window = pending;
+                timer.schedule(() -> flushWindow(window), batchWindow, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return queued.result();
+    }
+
+    private void flushWindow(List<PendingText> window) {
+        List<PendingText> batch;
+        synchronized (this) {
+            // the window's batch may already have gone out because it filled up
+            if (pending != window || pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        send(batch);
+    }
+
+    private List<PendingText> takePending() {
+        List<PendingText> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void send(List<PendingText> batch) {
+        long sentAt = System.nanoTime();
+        batch.forEach(queued -> queueWait.record(sentAt - queued.queuedAt(), TimeUnit.NANOSECONDS));
+        requests.increment();
+        texts.increment(batch.size());
+        batchSizes.record(batch.size());
+
+        JsonArray emailTexts = new JsonArray();
+        batch.forEach(queued -> emailTexts.add(queued.text()));
+        JsonObject body = new JsonObject();
+        body.add("email_texts", emailTexts);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(apiUrl))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    requestDuration.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+                    if (error != null) {
+                        AiModelException failure = new AiModelException("AI model analysis error",
+                                error.getCause() != null ? error.getCause() : error);
+                        batch.forEach(queued -> queued.result().completeExceptionally(failure));
+                        return;
+                    }
+                    if (response.statusCode() != 200) {
+                        log.warn("AI model batch of {} failed with status: {}", batch.size(), response.statusCode());
+                        batch.forEach(queued -> queued.result().complete(-1f));
+                        return;
+                    }
+                    try {
+                        JsonArray results = JsonParser.parseString(response.body()).getAsJsonObject().getAsJsonArray("results");
+                        if (results.size() != batch.size()) {
+                            throw new IllegalStateException("Expected " + batch.size() + " results, got " + results.size());
+                        }
+                        for (int i = 0; i < batch.size(); i++) {
+                            batch.get(i).result().complete(results.get(i).getAsJsonObject().get("probability").getAsFloat());
+                        }
+                    } catch (RuntimeException e) {
+                        AiModelException failure = new AiModelException("Unreadable AI model response", e);
+                        batch.forEach(queued -> queued.result().completeExceptionally(failure));
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
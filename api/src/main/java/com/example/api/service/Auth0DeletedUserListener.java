@@ -25,9 +25,16 @@ public class Auth0DeletedUserListener {
 
     private final MailboxRepository mailboxRepository;
 
-    public Auth0DeletedUserListener(ManagementAPI mgmt, MailboxRepository mailboxRepository) {
+    private final MailboxCache mailboxCache;
+
+    private final MailboxConnectionService mailboxConnectionService;
+
+    public Auth0DeletedUserListener(ManagementAPI mgmt, MailboxRepository mailboxRepository, MailboxCache mailboxCache,
+                                    MailboxConnectionService mailboxConnectionService) {
         this.mgmt = mgmt;
         this.mailboxRepository = mailboxRepository;
+        this.mailboxCache = mailboxCache;
+        this.mailboxConnectionService = mailboxConnectionService;
     }
 
     @Scheduled(fixedDelay = 600000)
@@ -61,7 +68,9 @@ public class Auth0DeletedUserListener {
 
                     if (userId != null) {
                         log.info("Found deleted user: {}", userId);
+                        mailboxConnectionService.stopAllMailboxMonitoring(userId);
                         mailboxRepository.deleteByUserId(userId);
+                        mailboxCache.invalidateUser(userId);
                     }
                 }
             }
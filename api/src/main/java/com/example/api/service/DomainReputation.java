@@ -0,0 +1,239 @@
+package com.example.api.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides URLs on trusted or known-bad domains without any remote check.
+ * Domains are read from one file per verdict, one domain per line, and cover all their subdomains;
+ * when both a domain and one of its subdomains are listed, the more specific entry wins. The files are
+ * re-read when they change. A trusted link whose query carries another URL is left UNKNOWN, since
+ * open redirectors on otherwise trusted hosts would pass it on to wherever that URL points.
+ * <p>
+ * The domains are held in an immutable trie keyed by labels from the right ({@code com -> google -> mail}),
+ * flattened into arrays, which each reload replaces as a whole; lookups take no locks.
+ */
+@Slf4j
+@Component
+public class DomainReputation {
+
+    public enum Verdict { TRUSTED, BLOCKED, UNKNOWN }
+
+    private final Resource trustedFile;
+    private final Resource blockedFile;
+    private long trustedModified = -1;
+    private long blockedModified = -1;
+    private volatile DomainTrie trie = DomainTrie.build(Map.of());
+
+    public DomainReputation(@Value("${scan.domains.trusted-file:classpath:domains/trusted.txt}") Resource trustedFile,
+                            @Value("${scan.domains.blocked-file:classpath:domains/blocked.txt}") Resource blockedFile) {
+        this.trustedFile = trustedFile;
+        this.blockedFile = blockedFile;
+        reloadIfChanged();
+    }
+
+    public Verdict classify(String url) {
+        String host = host(url);
+        if (host.isEmpty()) {
+            return Verdict.UNKNOWN;
+        }
+        Verdict verdict = trie.lookup(host);
+        return verdict == Verdict.TRUSTED && embedsUrl(url) ? Verdict.UNKNOWN : verdict;
+    }
+
+    public int size() {
+        return trie.size();
+    }
+
+    @Scheduled(fixedDelayString = "${scan.domains.reload-interval:60000}")
+    public synchronized void reloadIfChanged() {
+        long trusted = lastModified(trustedFile);
+        long blocked = lastModified(blockedFile);
+        if (trusted == trustedModified && blocked == blockedModified) {
+            return;
+        }
+        try {
+            Map<String, Verdict> domains = new HashMap<>();
+            read(trustedFile).forEach(domain -> domains.put(domain, Verdict.TRUSTED));
+            // a domain on both lists is treated as bad
+            read(blockedFile).forEach(domain -> domains.put(domain, Verdict.BLOCKED));
+            trie = DomainTrie.build(domains);
+            trustedModified = trusted;
+            blockedModified = blocked;
+            log.info("Loaded {} trusted and blocked domains", trie.size());
+        } catch (IOException e) {
+            log.error("Failed to load domain lists, keeping the previous ones: {}", e.getMessage());
+        }
+    }
+
+    private static List<String> read(Resource resource) throws IOException {
+        if (!resource.exists()) {
+            return List.of();
+        }
+        List<String> domains = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String domain = (comment >= 0 ? line.substring(0, comment) : line).strip().toLowerCase(Locale.ROOT);
+                if (domain.startsWith("*.")) {
+                    domain = domain.substring(2);
+                }
+                if (!domain.isEmpty()) {
+                    domains.add(domain);
+                }
+            }
+        }
+        return domains;
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.exists() ? resource.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static boolean embedsUrl(String url) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return false;
+        }
+        String rest = url.substring(query + 1).toLowerCase(Locale.ROOT);
+        return rest.contains("://") || rest.contains("%3a%2f%2f") || rest.contains("%253a%252f%252f");
+    }
+
+    private static String host(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = url.length();
+        for (int i = start; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        String host = url.substring(start, end);
+        host = host.substring(host.lastIndexOf('@') + 1);
+        int port = host.lastIndexOf(':');
+        if (port >= 0 && port > host.lastIndexOf(']')) {
+            host = host.substring(0, port);
+        }
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Trie over domain labels, right to left, stored as arrays. The children of a node are contiguous
+     * and sorted by label, so a step down is a binary search within {@code [firstChild, firstChild + childCount)}.
+     */
+    static final class DomainTrie {
+
+        private final String[] labels;
+        private final int[] firstChild;
+        private final int[] childCount;
+        private final Verdict[] verdicts;
+        private final int size;
+
+        private DomainTrie(String[] labels, int[] firstChild, int[] childCount, Verdict[] verdicts, int size) {
+            this.labels = labels;
+            this.firstChild = firstChild;
+            this.childCount = childCount;
+            this.verdicts = verdicts;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Verdict lookup(String host) {
+            Verdict verdict = Verdict.UNKNOWN;
+            int node = 0;
+            int end = host.length();
+            while (end > 0) {
+                int start = host.lastIndexOf('.', end - 1) + 1;
+                node = child(node, host.substring(start, end));
+                if (node < 0) {
+                    break;
+                }
+                if (verdicts[node] != null) {
+                    verdict = verdicts[node];
+                }
+                end = start - 1;
+            }
+            return verdict;
+        }
+
+        private int child(int node, String label) {
+            int low = firstChild[node];
+            int high = low + childCount[node] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = labels[mid].compareTo(label);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        static DomainTrie build(Map<String, Verdict> domains) {
+            // nested maps first, then laid out breadth-first so that siblings end up next to each other
+            record Node(TreeMap<String, Node> children, Verdict[] verdict) {
+                Node() {
+                    this(new TreeMap<>(), new Verdict[1]);
+                }
+            }
+            Node root = new Node();
+            domains.forEach((domain, verdict) -> {
+                Node node = root;
+                String[] parts = domain.split("\\.");
+                for (int i = parts.length - 1; i >= 0; i--) {
+                    if (!parts[i].isEmpty()) {
+                        node = node.children().computeIfAbsent(parts[i], key -> new Node());
+                    }
+                }
+                node.verdict()[0] = verdict;
+            });
+
+            List<Node> order = new ArrayList<>();
+            List<String> labels = new ArrayList<>();
+            order.add(root);
+            labels.add("");
+            int[] firstChild;
+            int[] childCount;
+            for (int i = 0; i < order.size(); i++) {
+                for (var child : order.get(i).children().entrySet()) {
+                    order.add(child.getValue());
+                    labels.add(child.getKey());
+                }
+            }
+            firstChild = new int[order.size()];
+            childCount = new int[order.size()];
+            Verdict[] verdicts = new Verdict[order.size()];
+            int next = 1;
+            for (int i = 0; i < order.size(); i++) {
+                firstChild[i] = next;
+                childCount[i] = order.get(i).children().size();
+                verdicts[i] = order.get(i).verdict()[0];
+                next += childCount[i];
+            }
+            return new DomainTrie(labels.stream().map(String::intern).toArray(String[]::new),
+                    firstChild, childCount, verdicts, domains.size());
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.api.service;
+
+import javax.mail.Address;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import com.example.api.dto.AttachmentInfo;
+import com.example.api.dto.EmailContent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Queue of emails waiting for a phishing scan, kept in a memory-mapped journal file instead of on the heap.
+ * Records are appended as {@code [int length][byte state][payload]}; a consumer takes a record with
+ * {@link #poll(long, TimeUnit)} and marks it done with {@link #ack(Entry)}. Anything not acknowledged
+ * when the process stops, including scans that were in flight, is handed out again after a restart.
+ * <p>
+ * Positions are logical and only grow; {@code base} is the logical position stored at the start of the
+ * data area. When the queue drains the data area is rewound, and when it fills up the live records are
+ * moved to the front, so the file never needs more than its configured capacity.
+ */
+@Slf4j
+@Component
+public class DurableScanQueue {
+
+    private static final int MAGIC = 0x50534351;
+    private static final int HEADER_SIZE = 32; // magic, base, head, write
+    private static final int BASE_OFFSET = 8;
+    private static final int HEAD_OFFSET = 16;
+    private static final int WRITE_OFFSET = 24;
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final byte READY = 0;
+    private static final byte ACKED = 1;
+    private static final int COPY_CHUNK = 64 * 1024;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private long base;
+    // first record that is not acknowledged yet
+    private long head;
+    // next record to hand out to a consumer
+    private long dispatch;
+    private long write;
+    private int pending;
+
+    public record Entry(long position, EmailContent content) { }
+
+    public DurableScanQueue(@Value("${monitoring.scan-queue.path:data/scan-queue.journal}") String path,
+                            @Value("${monitoring.scan-queue.capacity-mb:64}") int capacityMb,
+                            MeterRegistry meterRegistry) throws IOException {
+        Path file = Path.of(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long capacity = Math.max(channel.size(), (long) capacityMb * 1024 * 1024);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (buffer.getInt(0) == MAGIC) {
+            base = buffer.getLong(BASE_OFFSET);
+            head = buffer.getLong(HEAD_OFFSET);
+            write = buffer.getLong(WRITE_OFFSET);
+        } else {
+            buffer.putInt(0, MAGIC);
+            writeHeader();
+        }
+        dispatch = head;
+        for (long position = head; position < write; position = next(position)) {
+            if (buffer.get(physical(position) + 4) == READY) {
+                pending++;
+            }
+        }
+        if (pending > 0) {
+            log.info("Recovered {} unscanned emails from {}", pending, file);
+        }
+
+        Gauge.builder("scan.queue.depth", this, DurableScanQueue::size)
+                .description("Emails waiting for a phishing scan")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Appends the email to the journal. Returns false when the journal is full.
+     */
+    public boolean offer(EmailContent content) {
+        byte[] payload;
+        try {
+            payload = encode(content);
+        } catch (IOException e) {
+            log.error("Unable to serialize message {} for the scan queue: {}", content.messageId(), e.getMessage());
+            return false;
+        }
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+
+        lock.lock();
+        try {
+            if (physical(write) + recordSize > buffer.capacity() && !compact(recordSize)) {
+                return false;
+            }
+            int position = physical(write);
+            buffer.putInt(position, payload.length);
+            buffer.put(position + 4, READY);
+            buffer.put(position + RECORD_HEADER_SIZE, payload);
+            write += recordSize;
+            buffer.putLong(WRITE_OFFSET, write);
+            pending++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next email, waiting up to the given time for one to arrive.
+     */
+    public Entry poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long position;
+        byte[] payload;
+        lock.lockInterruptibly();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (true) {
+                // records acknowledged out of order before a restart are skipped
+                while (dispatch < write && buffer.get(physical(dispatch) + 4) == ACKED) {
+                    dispatch = next(dispatch);
+                }
+                if (dispatch < write) {
+                    break;
+                }
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            position = dispatch;
+            payload = new byte[buffer.getInt(physical(position))];
+            buffer.get(physical(position) + RECORD_HEADER_SIZE, payload);
+            dispatch = next(position);
+            pending--;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            return new Entry(position, decode(payload));
+        } catch (IOException e) {
+            log.error("Dropping unreadable scan queue record at {}: {}", position, e.getMessage());
+            ack(new Entry(position, null));
+            return null;
+        }
+    }
+
+    public void ack(Entry entry) {
+        lock.lock();
+        try {
+            if (entry.position() < head) {
+                return;
+            }
+            buffer.put(physical(entry.position()) + 4, ACKED);
+            while (head < dispatch && buffer.get(physical(head) + 4) == ACKED) {
+                head = next(head);
+            }
+            if (head == write) {
+                // drained: start over at the front of the data area
+                base = head;
+            }
+            writeHeader();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the live records to the front of the data area. Only done when they fit into the space
+     * already freed, so that a crash half way leaves the records at their old place intact.
+     */
+    private boolean compact(int recordSize) {
+        int from = physical(head);
+        int live = (int) (write - head);
+        if (live > from - HEADER_SIZE || HEADER_SIZE + live + recordSize > buffer.capacity()) {
+            return false;
+        }
+        byte[] chunk = new byte[Math.min(COPY_CHUNK, Math.max(live, 1))];
+        for (int copied = 0; copied < live; copied += chunk.length) {
+            int length = Math.min(chunk.length, live - copied);
+            buffer.get(from + copied, chunk, 0, length);
+            buffer.put(HEADER_SIZE + copied, chunk, 0, length);
+        }
+        base = head;
+        buffer.putLong(BASE_OFFSET, base);
+        log.debug("Compacted scan queue, {} bytes of pending records kept", live);
+        return true;
+    }
+
+    private int physical(long position) {
+        return (int) (position - base) + HEADER_SIZE;
+    }
+
+    private long next(long position) {
+        return position + RECORD_HEADER_SIZE + buffer.getInt(physical(position));
+    }
+
+    private void writeHeader() {
+        buffer.putLong(BASE_OFFSET, base);
+        buffer.putLong(HEAD_OFFSET, head);
+        buffer.putLong(WRITE_OFFSET, write);
+    }
+
+    private static byte[] encode(EmailContent content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, content.username());
+            writeString(out, content.currentUserId());
+            writeString(out, content.messageId());
+            writeString(out, content.content());
+            writeString(out, content.subject());
+            Address[] from = content.from() == null ? new Address[0] : content.from();
+            out.writeInt(from.length);
+            for (Address address : from) {
+                writeString(out, address.toString());
+            }
+            out.writeInt(content.attachments().size());
+            for (AttachmentInfo attachment : content.attachments()) {
+                writeString(out, attachment.fileName());
+                writeString(out, attachment.mimeType());
+                out.writeInt(attachment.size());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static EmailContent decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String username = readString(in);
+            String currentUserId = readString(in);
+            String messageId = readString(in);
+            String content = readString(in);
+            String subject = readString(in);
+            Address[] from = new Address[in.readInt()];
+            for (int i = 0; i < from.length; i++) {
+                from[i] = new InternetAddress(readString(in), false);
+            }
+            List<AttachmentInfo> attachments = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                attachments.add(new AttachmentInfo(readString(in), readString(in), in.readInt()));
+            }
+            return new EmailContent(username, currentUserId, messageId, content, subject, from, List.copyOf(attachments));
+        } catch (AddressException e) {
+            throw new IOException("Invalid sender address", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Truncated scan queue record");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
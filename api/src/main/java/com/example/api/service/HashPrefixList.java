@@ -0,0 +1,183 @@
+package com.example.api.service;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable, sorted set of Safe Browsing hash prefixes for one threat list.
+ * Prefixes of each length are stored back to back in one sorted {@code byte[]}, which costs exactly
+ * the prefix bytes and allows a binary search per length. Almost all prefixes are 4 bytes long, so a
+ * lookup is a single binary search over a flat array.
+ * <p>
+ * Updates produce a new instance; removal indices and the checksum refer to the lexicographic order of
+ * all prefixes across lengths, as defined by the Update API.
+ */
+final class HashPrefixList {
+
+    static final HashPrefixList EMPTY = new HashPrefixList(new int[0], new byte[0][]);
+
+    // prefix lengths, ascending, and the sorted prefixes of each length
+    private final int[] lengths;
+    private final byte[][] prefixes;
+
+    private HashPrefixList(int[] lengths, byte[][] prefixes) {
+        this.lengths = lengths;
+        this.prefixes = prefixes;
+    }
+
+    int size() {
+        int size = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            size += prefixes[i].length / lengths[i];
+        }
+        return size;
+    }
+
+    /**
+     * Returns the prefix of the full hash that is in the list, or null.
+     */
+    byte[] matchingPrefix(byte[] fullHash) {
+        for (int i = 0; i < lengths.length; i++) {
+            if (binarySearch(prefixes[i], lengths[i], fullHash) >= 0) {
+                return Arrays.copyOf(fullHash, lengths[i]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies an update: drops the prefixes at the given indices of the sorted list, then adds the new ones.
+     *
+     * @param removals indices into the current sorted list
+     * @param additions concatenated prefixes, keyed by prefix length
+     */
+    HashPrefixList apply(int[] removals, TreeMap<Integer, byte[]> additions) {
+        boolean[] removed = new boolean[size()];
+        for (int index : removals) {
+            if (index < 0 || index >= removed.length) {
+                throw new IllegalArgumentException("Removal index " + index + " out of range for " + removed.length + " prefixes");
+            }
+            removed[index] = true;
+        }
+
+        TreeMap<Integer, ByteArrayOutputStream> kept = new TreeMap<>();
+        int[] cursor = new int[lengths.length];
+        for (int index = 0; index < removed.length; index++) {
+            int group = nextGroup(cursor);
+            int length = lengths[group];
+            if (!removed[index]) {
+                kept.computeIfAbsent(length, key -> new ByteArrayOutputStream())
+                        .write(prefixes[group], cursor[group] * length, length);
+            }
+            cursor[group]++;
+        }
+        additions.forEach((length, added) -> kept.computeIfAbsent(length, key -> new ByteArrayOutputStream())
+                .writeBytes(added));
+
+        int[] newLengths = new int[kept.size()];
+        byte[][] newPrefixes = new byte[kept.size()][];
+        int group = 0;
+        for (var entry : kept.entrySet()) {
+            if (entry.getValue().size() % entry.getKey() != 0) {
+                throw new IllegalArgumentException("Prefix data is not a multiple of the prefix length " + entry.getKey());
+            }
+            newLengths[group] = entry.getKey();
+            newPrefixes[group] = sort(entry.getValue().toByteArray(), entry.getKey());
+            group++;
+        }
+        return new HashPrefixList(newLengths, newPrefixes);
+    }
+
+    /**
+     * SHA-256 of all prefixes concatenated in lexicographic order, to compare with the list checksum.
+     */
+    byte[] checksum() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        int[] cursor = new int[lengths.length];
+        for (int remaining = size(); remaining > 0; remaining--) {
+            int group = nextGroup(cursor);
+            digest.update(prefixes[group], cursor[group] * lengths[group], lengths[group]);
+            cursor[group]++;
+        }
+        return digest.digest();
+    }
+
+    /**
+     * The group holding the lexicographically smallest prefix not yet visited; a shorter prefix sorts
+     * before a longer one that starts with it.
+     */
+    private int nextGroup(int[] cursor) {
+        int best = -1;
+        for (int group = 0; group < lengths.length; group++) {
+            if (cursor[group] * lengths[group] >= prefixes[group].length) {
+                continue;
+            }
+            if (best < 0 || compare(group, cursor[group], best, cursor[best]) < 0) {
+                best = group;
+            }
+        }
+        return best;
+    }
+
+    private int compare(int groupA, int indexA, int groupB, int indexB) {
+        int lengthA = lengths[groupA];
+        int lengthB = lengths[groupB];
+        return Arrays.compareUnsigned(prefixes[groupA], indexA * lengthA, indexA * lengthA + lengthA,
+                prefixes[groupB], indexB * lengthB, indexB * lengthB + lengthB);
+    }
+
+    private static int binarySearch(byte[] sorted, int length, byte[] fullHash) {
+        int low = 0;
+        int high = sorted.length / length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Arrays.compareUnsigned(sorted, mid * length, mid * length + length, fullHash, 0, length);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] sort(byte[] data, int length) {
+        int count = data.length / length;
+        byte[] sorted = new byte[data.length];
+        if (length == 4) {
+            // flipping the sign bit makes signed int order match unsigned byte order
+            int[] values = new int[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = ((data[i * 4] & 0xff) << 24 | (data[i * 4 + 1] & 0xff) << 16
+                        | (data[i * 4 + 2] & 0xff) << 8 | data[i * 4 + 3] & 0xff) ^ Integer.MIN_VALUE;
+            }
+            Arrays.sort(values);
+            for (int i = 0; i < count; i++) {
+                int value = values[i] ^ Integer.MIN_VALUE;
+                sorted[i * 4] = (byte) (value >>> 24);
+                sorted[i * 4 + 1] = (byte) (value >>> 16);
+                sorted[i * 4 + 2] = (byte) (value >>> 8);
+                sorted[i * 4 + 3] = (byte) value;
+            }
+            return sorted;
+        }
+        Integer[] order = IntStream.range(0, count).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, (a, b) ->
+                Arrays.compareUnsigned(data, a * length, a * length + length, data, b * length, b * length + length));
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(data, order[i] * length, sorted, i * length, length);
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.api.service;
+
+import javax.mail.*;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.example.api.dto.EmailConfigRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+@Slf4j
+@Component
+public class ImapConnectionPool {
+
+    private static final int CONNECTION_TIMEOUT = 60000; // 60 seconds
+    private static final long MAX_IDLE_TIME = 30 * 60 * 1000; // 30 minutes without a lease
+
+    private final ConcurrentHashMap<String, PooledConnection> connections = new ConcurrentHashMap<>();
+    private final ImapHostLimiter hostLimiter;
+    // the NOOPs block on the network, so they run here rather than on the shared scheduler thread
+    private final ExecutorService keepAliveExecutor;
+
+    public ImapConnectionPool(ImapHostLimiter hostLimiter,
+                              @Value("${monitoring.pool.keepalive-threads:4}") int keepAliveThreads) {
+        this.hostLimiter = hostLimiter;
+        this.keepAliveExecutor = Executors.newFixedThreadPool(Math.max(1, keepAliveThreads), runnable -> {
+            Thread thread = new Thread(runnable, "imap-keepalive");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class PooledConnection {
+        private final String host;
+        private final Store store;
+        private final int credentialsHash;
+        private boolean leased;
+        private boolean checking;
+        private long lastUsed;
+
+        private PooledConnection(String host, Store store, int credentialsHash) {
+            this.host = host;
+            this.store = store;
+            this.credentialsHash = credentialsHash;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private Properties createMailProperties() {
+        Properties props = new Properties();
+        props.put("mail.store.protocol", "imap");
+        props.put("mail.imap.ssl.enable", "true");
+        props.put("mail.imap.ssl.trust", "*");
+        props.put("mail.imap.connectiontimeout", CONNECTION_TIMEOUT);
+        props.put("mail.imap.timeout", CONNECTION_TIMEOUT);
+        props.put("mail.imap.writetimeout", CONNECTION_TIMEOUT);
+        // body parts are read in ranged FETCHes, so capped text reads stop downloading at the cap
+        props.put("mail.imap.partialfetch", "true");
+        props.put("mail.imap.fetchsize", "65536");
+        // keep the single authenticated connection around between cycles instead of the 45s default
+        props.put("mail.imap.connectionpooltimeout", (int) MAX_IDLE_TIME);
+        return props;
+    }
+
+    /**
+     * Returns a connected store for the mailbox, reusing the pooled connection when there is one.
+     * Opening a new connection has to be admitted by the {@link ImapHostLimiter} first; when the host is at its cap,
+     * the least recently used idle connection to it is closed to make room, and if every one of them is leased the
+     * call fails with a {@link com.example.api.exception.HostCapacityException} and the mailbox waits in the
+     * host's line for its next attempt. Callers must hand the store back
+     * with {@link #release(String)}, or {@link #invalidate(String)} when the connection turned out to be dead.
+     */
+    public Store acquire(String mailboxKey, EmailConfigRequest config, String password) throws MessagingException {
+        int credentialsHash = (config.host() + "\0" + password).hashCode();
+
+        PooledConnection connection = connections.get(mailboxKey);
+        if (connection != null) {
+            synchronized (connection) {
+                if (connection.credentialsHash == credentialsHash) {
+                    connection.leased = true;
+                    return connection.store;
+                }
+            }
+            log.info("Credentials changed for {}, reconnecting", config.username());
+            invalidate(mailboxKey);
+        }
+
+        hostLimiter.acquire(config.host(), mailboxKey, () -> evictLeastRecentlyUsed(config.host()));
+
+        Store store;
+        try {
+            store = connect(config, password);
+        } catch (MessagingException | RuntimeException e) {
+            hostLimiter.release(config.host());
+            throw e;
+        }
+
+        PooledConnection created = new PooledConnection(config.host(), store, credentialsHash);
+        created.leased = true;
+        PooledConnection previous = connections.put(mailboxKey, created);
+        if (previous != null) {
+            close(previous);
+        }
+        log.debug("Opened pooled connection for {}", config.username());
+        return store;
+    }
+
+    protected Store connect(EmailConfigRequest config, String password) throws MessagingException {
+        Session session = Session.getInstance(createMailProperties());
+        Store store = session.getStore(config.protocol());
+        store.connect(config.host(), config.username(), password);
+        return store;
+    }
+
+    /**
+     * Closes the idle connection to the host that has gone unused the longest, handing its slot back
+     * to the limiter. Returns false when every connection to the host is leased or being checked.
+     */
+    private boolean evictLeastRecentlyUsed(String host) {
+        while (true) {
+            Map.Entry<String, PooledConnection> candidate = connections.entrySet().stream()
+                    .filter(entry -> entry.getValue().host.equals(host))
+                    .filter(entry -> isIdle(entry.getValue()))
+                    .min(Comparator.comparingLong(entry -> lastUsed(entry.getValue())))
+                    .orElse(null);
+            if (candidate == null) {
+                return false;
+            }
+            PooledConnection connection = candidate.getValue();
+            synchronized (connection) {
+                // it may have been leased or replaced since the scan
+                if (!isIdle(connection) || !connections.remove(candidate.getKey(), connection)) {
+                    continue;
+                }
+            }
+            log.debug("Evicting pooled connection for {} to make room on {}", candidate.getKey(), host);
+            close(connection);
+            return true;
+        }
+    }
+
+    private static boolean isIdle(PooledConnection connection) {
+        synchronized (connection) {
+            return !connection.leased && !connection.checking;
+        }
+    }
+
+    private static long lastUsed(PooledConnection connection) {
+        synchronized (connection) {
+            return connection.lastUsed;
+        }
+    }
+
+    public void release(String mailboxKey) {
+        PooledConnection connection = connections.get(mailboxKey);
+        if (connection != null) {
+            synchronized (connection) {
+                connection.leased = false;
+                connection.lastUsed = System.currentTimeMillis();
+            }
+        }
+    }
+
+    public void invalidate(String mailboxKey) {
+        PooledConnection connection = connections.remove(mailboxKey);
+        if (connection != null) {
+            close(connection);
+        }
+    }
+
+    public int size() {
+        return connections.size();
+    }
+
+    /**
+     * Hands every idle pooled connection to the keepalive threads, which NOOP it or evict it.
+     * A connection whose previous check has not finished yet is skipped.
+     */
+    @Scheduled(fixedDelayString = "${monitoring.pool.keepalive-interval:240000}")
+    public void keepAlive() {
+        connections.forEach((mailboxKey, connection) -> {
+            synchronized (connection) {
+                if (connection.leased || connection.checking) {
+                    return;
+                }
+                connection.checking = true;
+            }
+            keepAliveExecutor.execute(() -> check(mailboxKey, connection));
+        });
+    }
+
+    private void check(String mailboxKey, PooledConnection connection) {
+        boolean expired;
+        synchronized (connection) {
+            expired = System.currentTimeMillis() - connection.lastUsed > MAX_IDLE_TIME;
+        }
+        // IMAPStore.isConnected() issues a NOOP, which both keeps the session alive and detects drops;
+        // it runs outside the lock so that acquire() doesn't wait on the server
+        boolean connected = expired || connection.store.isConnected();
+        boolean evict;
+        synchronized (connection) {
+            connection.checking = false;
+            // the connection may have been leased, or used and handed back, while the NOOP ran
+            if (connection.leased) {
+                return;
+            }
+            evict = !connected || System.currentTimeMillis() - connection.lastUsed > MAX_IDLE_TIME;
+        }
+        if (evict && connections.remove(mailboxKey, connection)) {
+            log.debug("Evicting pooled connection for {}", mailboxKey);
+            close(connection);
+        }
+    }
+
+    private void close(PooledConnection connection) {
+        try {
+            connection.store.close();
+        } catch (MessagingException e) {
+            log.warn("Error closing pooled connection to {}: {}", connection.host, e.getMessage());
+        } finally {
+            hostLimiter.release(connection.host);
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        keepAliveExecutor.shutdownNow();
+        connections.keySet().forEach(this::invalidate);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.api.service;
+
+import javax.mail.MessagingException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import com.example.api.exception.HostCapacityException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admission control in front of {@code store.connect}, per IMAP host. A host admits at most
+ * {@code max-connections-per-host} open connections and {@code connects-per-second} new ones.
+ * <p>
+ * A host at its cap never parks the caller. The mailbox is refused and put at the back of the host's waiting
+ * line, and asks again on its next attempt; a slot that frees up is kept for the mailbox at the head of the
+ * line, and everyone behind it is refused until that mailbox has taken it. A mailbox that stops asking for
+ * {@code WAITER_TIMEOUT} ms loses its place, so one that stopped being monitored can't hold up the line.
+ * The length of the line is published as {@code imap.host.connections.waiting}, and the time from joining it
+ * to being admitted as {@code imap.host.admission.wait}.
+ */
+@Component
+public class ImapHostLimiter {
+
+    private static final long WAITER_TIMEOUT = 30000; // 30 seconds
+
+    private final ConcurrentHashMap<String, HostGate> gates = new ConcurrentHashMap<>();
+    private final int maxConnectionsPerHost;
+    private final long connectSpacingNanos;
+    private final Map<String, Integer> hostMaxConnections;
+    private final MeterRegistry meterRegistry;
+
+    public ImapHostLimiter(@Value("${monitoring.pool.max-connections-per-host:200}") int maxConnectionsPerHost,
+                           @Value("${monitoring.pool.connects-per-second:10}") double connectsPerSecond,
+                           @Value("#{${monitoring.pool.host-max-connections:{:}}}") Map<String, Integer> hostMaxConnections,
+                           MeterRegistry meterRegistry) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.connectSpacingNanos = (long) (TimeUnit.SECONDS.toNanos(1) / connectsPerSecond);
+        this.hostMaxConnections = hostMaxConnections;
+        this.meterRegistry = meterRegistry;
+    }
+
+    private record Waiter(long queuedAt, long lastSeen) { }
+
+    private static final class HostGate {
+        private final int maxConnections;
+        private final long connectSpacingNanos;
+        private int open;
+        // mailbox keys in the order they were first refused
+        private final LinkedHashMap<String, Waiter> waiting = new LinkedHashMap<>();
+        private long nextConnectAt;
+        private Timer waitTimer;
+        private Counter rejected;
+
+        private HostGate(int maxConnections, long connectSpacingNanos) {
+            this.maxConnections = maxConnections;
+            this.connectSpacingNanos = connectSpacingNanos;
+            this.nextConnectAt = System.nanoTime();
+        }
+
+        /**
+         * Takes a slot if one is free and nobody is ahead of the mailbox; otherwise the mailbox keeps,
+         * or joins, its place in line. Returns the nanoseconds the mailbox waited in line, or -1 if refused.
+         */
+        private synchronized long admit(String mailboxKey) {
+            long now = System.nanoTime();
+            dropStaleWaiters(now);
+            Waiter waiter = waiting.get(mailboxKey);
+            if (open < maxConnections && isNext(mailboxKey)) {
+                open++;
+                waiting.remove(mailboxKey);
+                return waiter == null ? 0 : now - waiter.queuedAt();
+            }
+            waiting.put(mailboxKey, new Waiter(waiter == null ? now : waiter.queuedAt(), now));
+            return -1;
+        }
+
+        private synchronized boolean isNext(String mailboxKey) {
+            return waiting.isEmpty() || waiting.keySet().iterator().next().equals(mailboxKey);
+        }
+
+        private void dropStaleWaiters(long now) {
+            Iterator<Waiter> waiters = waiting.values().iterator();
+            while (waiters.hasNext()) {
+                if (now - waiters.next().lastSeen() > TimeUnit.MILLISECONDS.toNanos(WAITER_TIMEOUT)) {
+                    waiters.remove();
+                }
+            }
+        }
+
+        private synchronized void release() {
+            open = Math.max(0, open - 1);
+        }
+
+        private synchronized int waitingCount() {
+            return waiting.size();
+        }
+
+        private synchronized int openCount() {
+            return open;
+        }
+
+        private synchronized long reserveConnectSlot() {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextConnectAt);
+            nextConnectAt = slot + connectSpacingNanos;
+            return slot - now;
+        }
+    }
+
+    private HostGate gate(String host) {
+        return gates.computeIfAbsent(host, key -> {
+            HostGate gate = new HostGate(hostMaxConnections.getOrDefault(key, maxConnectionsPerHost), connectSpacingNanos);
+            gate.waitTimer = Timer.builder("imap.host.admission.wait")
+                    .description("Time mailboxes wait in line for a connection slot on an IMAP host")
+                    .tag("host", key)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            gate.rejected = Counter.builder("imap.host.admission.rejected")
+                    .tag("host", key)
+                    .register(meterRegistry);
+            Gauge.builder("imap.host.connections.open", gate, HostGate::openCount)
+                    .tag("host", key)
+                    .register(meterRegistry);
+            Gauge.builder("imap.host.connections.waiting", gate, HostGate::waitingCount)
+                    .tag("host", key)
+                    .register(meterRegistry);
+            return gate;
+        });
+    }
+
+    /**
+     * Admits one more connection to the host for the mailbox. When the host is at its cap and the mailbox is
+     * next in line, {@code makeRoom} gets one chance to free a slot, typically by closing an idle connection.
+     * A mailbox that isn't admitted gets a {@link HostCapacityException} and keeps its place in line for its
+     * next attempt. Every successful call must be paired with {@link #release(String)} once that connection
+     * is closed.
+     */
+    public void acquire(String host, String mailboxKey, BooleanSupplier makeRoom) throws MessagingException {
+        HostGate gate = gate(host);
+        long waited = gate.admit(mailboxKey);
+        if (waited < 0 && gate.isNext(mailboxKey) && makeRoom.getAsBoolean()) {
+            waited = gate.admit(mailboxKey);
+        }
+        if (waited < 0) {
+            gate.rejected.increment();
+            throw new HostCapacityException("Connection limit reached for host " + host);
+        }
+        gate.waitTimer.record(waited, TimeUnit.NANOSECONDS);
+        try {
+            TimeUnit.NANOSECONDS.sleep(gate.reserveConnectSlot());
+        } catch (InterruptedException e) {
+            gate.release();
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for a connection to " + host, e);
+        }
+    }
+
+    public void release(String host) {
+        HostGate gate = gates.get(host);
+        if (gate != null) {
+            gate.release();
+        }
+    }
+
+    /**
+     * Minimum time between two new connections to the same host, in milliseconds.
+     */
+    public long getConnectSpacing() {
+        return TimeUnit.NANOSECONDS.toMillis(connectSpacingNanos);
+    }
+}
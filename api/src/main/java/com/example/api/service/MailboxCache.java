@@ -0,0 +1,88 @@
+package com.example.api.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import com.example.api.model.Mailbox;
+import com.example.api.repository.MailboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded, expiring cache of mailboxes by email and user, in front of {@link MailboxRepository}.
+ * Polling cycles and scans look up the same mailbox over and over; with the cache they skip both
+ * the query and the password decryption in {@code AESConverter}. Entries are dropped when the mailbox
+ * is updated or deleted on this node, and expire after {@code mailbox.cache.ttl} to pick up changes
+ * made on other nodes.
+ */
+@Component
+public class MailboxCache {
+
+    private record CachedMailbox(Mailbox mailbox, long expiresAt) { }
+
+    private final MailboxRepository mailboxRepository;
+    private final long ttl;
+    private final Map<String, CachedMailbox> entries;
+    // bumped on every invalidation, so a lookup racing with one doesn't cache what it read before
+    private long generation;
+
+    public MailboxCache(MailboxRepository mailboxRepository,
+                        @Value("${mailbox.cache.max-entries:10000}") int maxEntries,
+                        @Value("${mailbox.cache.ttl:300000}") long ttl) {
+        this.mailboxRepository = mailboxRepository;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMailbox> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public Optional<Mailbox> findByEmailAndUserId(String email, String userId) {
+        String key = key(email, userId);
+        long lookupGeneration;
+        synchronized (this) {
+            CachedMailbox cached = entries.get(key);
+            if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+                return Optional.of(cached.mailbox());
+            }
+            entries.remove(key);
+            lookupGeneration = generation;
+        }
+
+        Optional<Mailbox> mailbox = mailboxRepository.findByEmailAndUserId(email, userId);
+        mailbox.ifPresent(found -> {
+            synchronized (this) {
+                if (generation == lookupGeneration) {
+                    entries.put(key, new CachedMailbox(found, System.currentTimeMillis() + ttl));
+                }
+            }
+        });
+        return mailbox;
+    }
+
+    public synchronized void invalidate(Mailbox mailbox) {
+        generation++;
+        entries.values().removeIf(cached -> cached.mailbox().getId().equals(mailbox.getId()));
+        entries.remove(key(mailbox.getEmail(), mailbox.getUserId()));
+    }
+
+    public synchronized void invalidate(Long mailboxId) {
+        generation++;
+        entries.values().removeIf(cached -> cached.mailbox().getId().equals(mailboxId));
+    }
+
+    public synchronized void invalidateUser(String userId) {
+        generation++;
+        entries.values().removeIf(cached -> userId.equals(cached.mailbox().getUserId()));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static String key(String email, String userId) {
+        return email + "_" + userId;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.api.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-mailbox circuit breaker for polling cycles. Failed cycles are retried after a jittered, exponentially
+ * growing delay; after {@code failure-threshold} consecutive failures the breaker opens, which is the
+ * only point where the user is told the connection is down. Each retry while open is a half-open trial:
+ * one success closes the breaker again, a failure re-opens it with the next backoff step.
+ */
+@Slf4j
+@Component
+public class MailboxCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Outcome of a failed cycle: when to retry, and whether this failure is the one that opened the breaker.
+     */
+    public record Failure(long retryDelay, boolean opened) { }
+
+    private final int failureThreshold;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final ConcurrentHashMap<String, BreakerState> states = new ConcurrentHashMap<>();
+
+    public MailboxCircuitBreaker(@Value("${monitoring.breaker.failure-threshold:3}") int failureThreshold,
+                                 @Value("${monitoring.breaker.base-delay:5000}") long baseDelay,
+                                 @Value("${monitoring.breaker.max-delay:600000}") long maxDelay) {
+        this.failureThreshold = failureThreshold;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    private static final class BreakerState {
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+    }
+
+    /**
+     * Called before a cycle runs; a cycle on an open breaker is its half-open trial.
+     */
+    public void beforeAttempt(String mailboxKey) {
+        BreakerState breaker = states.get(mailboxKey);
+        if (breaker != null) {
+            synchronized (breaker) {
+                if (breaker.state == State.OPEN) {
+                    breaker.state = State.HALF_OPEN;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a successful cycle. Returns true if this closed a breaker that was open.
+     */
+    public boolean onSuccess(String mailboxKey) {
+        BreakerState breaker = states.remove(mailboxKey);
+        if (breaker == null) {
+            return false;
+        }
+        synchronized (breaker) {
+            return breaker.state != State.CLOSED;
+        }
+    }
+
+    public Failure onFailure(String mailboxKey) {
+        BreakerState breaker = states.computeIfAbsent(mailboxKey, key -> new BreakerState());
+        synchronized (breaker) {
+            breaker.consecutiveFailures++;
+            boolean opened = breaker.state == State.CLOSED && breaker.consecutiveFailures >= failureThreshold;
+            if (breaker.state != State.CLOSED || opened) {
+                breaker.state = State.OPEN;
+            }
+            if (opened) {
+                log.warn("Circuit breaker opened for {} after {} consecutive failures", mailboxKey, breaker.consecutiveFailures);
+            }
+            return new Failure(backoff(breaker.consecutiveFailures), opened);
+        }
+    }
+
+    public State getState(String mailboxKey) {
+        BreakerState breaker = states.get(mailboxKey);
+        if (breaker == null) {
+            return State.CLOSED;
+        }
+        synchronized (breaker) {
+            return breaker.state;
+        }
+    }
+
+    public void reset(String mailboxKey) {
+        states.remove(mailboxKey);
+    }
+
+    /**
+     * Exponential delay for the given failure count, jittered over its upper half so retries spread out
+     * without ever coming back sooner than half the nominal delay.
+     */
+    private long backoff(int failures) {
+        long delay = baseDelay << Math.min(failures - 1, 20);
+        delay = Math.min(Math.max(delay, baseDelay), maxDelay);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
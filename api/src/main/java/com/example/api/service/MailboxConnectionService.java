@@ -9,6 +9,8 @@ public interface MailboxConnectionService {
 
     void startMonitoring(EmailConfigRequest config);
 
+    void resumeMonitoring(EmailConfigRequest config);
+
     void stopMailboxMonitoring(String email, String userId);
 
     void stopAllMailboxMonitoring(String userId);
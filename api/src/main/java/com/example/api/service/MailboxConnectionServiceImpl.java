@@ -3,60 +3,106 @@ package com.example.api.service;
 import javax.mail.*;
 import java.util.*;
 import java.util.concurrent.*;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+import com.sun.mail.imap.ResyncData;
+import com.sun.mail.imap.protocol.Status;
 import com.example.api.dto.EmailConfigRequest;
 import com.example.api.dto.EmailContent;
 import com.example.api.exception.EmailsFetchingException;
+import com.example.api.exception.HostCapacityException;
+import com.example.api.exception.MailboxNotFoundException;
+import com.example.api.model.FolderCheckpoint;
 import com.example.api.model.Mailbox;
+import com.example.api.repository.FolderCheckpointRepository;
 import com.example.api.repository.MailboxRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
 @Slf4j
 @Service
 public class MailboxConnectionServiceImpl implements MailboxConnectionService {
 
-    private static final long POLLING_INTERVAL = 60 * 1000; // 1 minute
-    private static final int CONNECTION_TIMEOUT = 60000; // 60 seconds
+    private static final String INBOX = "INBOX";
+    private static final long IDLE_KEEPALIVE_INTERVAL = 9 * 60 * 1000; // servers drop IDLE after ~29 minutes
     private final MailboxRepository mailboxRepository;
+    private final MailboxCache mailboxCache;
+    private final FolderCheckpointRepository checkpointRepository;
     private final WebSocketNotificationService notificationService;
     private final MessageExtractorService messageExtractorService;
-    private final ScheduledExecutorService scheduledExecutor;
+    private final ImapConnectionPool connectionPool;
+    private final MonitoringEngine monitoringEngine;
+    private final AdaptivePollingScheduler pollingScheduler;
+    private final MailboxLeaseService leaseService;
+    private final ReconnectRamp reconnectRamp;
     private final ExecutorService phishingScanExecutor;
-    private final BlockingQueue<EmailContent> phishingScanQueue;
+    private final DurableScanQueue phishingScanQueue;
     private final ConcurrentHashMap<String, EmailConfigRequest> mailboxConfigs;
-    private final ConcurrentHashMap<String, ScheduledFuture<?>> pollingTasks;
+    private final ConcurrentHashMap<String, MonitoringTask> pollingTasks;
+    private final ConcurrentHashMap<String, FolderCheckpoint> checkpoints;
+    private final ConcurrentHashMap<String, ResolvedFolders> monitoredFolders = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Date> lastCheckTimes;
-    private final Set<String> processedMessageIds;
+    private final MessageDedupFilter processedMessages;
+    private final ProcessedMessageLedger processedMessageLedger;
+    private final MailboxCircuitBreaker circuitBreaker;
+    private final PollingBulkhead pollingBulkhead;
     private final Set<String> initialConnectionNotified = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private volatile boolean isRunning = true;
 
+    @Value("${monitoring.idle.enabled:true}")
+    private boolean idleEnabled;
 
-    public MailboxConnectionServiceImpl(MailboxRepository mailboxRepository,
-                                        MessageExtractorService messageExtractorService, WebSocketNotificationService notificationService) {
+    @Value("${monitoring.folders.default:INBOX,\\Junk}")
+    private List<String> defaultFolders;
+
+    // how often an IDLE session breaks off to check the folders other than the one it idles on
+    @Value("${monitoring.folders.secondary-interval:300000}")
+    private long secondaryFolderInterval;
+
+    public MailboxConnectionServiceImpl(MailboxRepository mailboxRepository, FolderCheckpointRepository checkpointRepository,
+                                        MessageExtractorService messageExtractorService, WebSocketNotificationService notificationService,
+                                        ImapConnectionPool connectionPool, MonitoringEngine monitoringEngine,
+                                        AdaptivePollingScheduler pollingScheduler, MailboxLeaseService leaseService,
+                                        ReconnectRamp reconnectRamp, DurableScanQueue phishingScanQueue,
+                                        MessageDedupFilter processedMessages, ProcessedMessageLedger processedMessageLedger,
+                                        MailboxCircuitBreaker circuitBreaker, PollingBulkhead pollingBulkhead,
+                                        MailboxCache mailboxCache) {
         this.mailboxRepository = mailboxRepository;
+        this.mailboxCache = mailboxCache;
+        this.checkpointRepository = checkpointRepository;
         this.notificationService = notificationService;
         this.messageExtractorService = messageExtractorService;
-        this.scheduledExecutor = Executors.newScheduledThreadPool(5);
+        this.connectionPool = connectionPool;
+        this.monitoringEngine = monitoringEngine;
+        this.pollingScheduler = pollingScheduler;
+        this.leaseService = leaseService;
+        this.reconnectRamp = reconnectRamp;
         this.phishingScanExecutor = Executors.newFixedThreadPool(10);
-        this.phishingScanQueue = new LinkedBlockingQueue<>();
+        this.phishingScanQueue = phishingScanQueue;
         this.mailboxConfigs = new ConcurrentHashMap<>();
         this.pollingTasks = new ConcurrentHashMap<>();
+        this.checkpoints = new ConcurrentHashMap<>();
         this.lastCheckTimes = new ConcurrentHashMap<>();
-        this.processedMessageIds = Collections.newSetFromMap(new ConcurrentHashMap<>());
-
-        startPhishingScanWorkers();
+        this.processedMessages = processedMessages;
+        this.processedMessageLedger = processedMessageLedger;
+        this.circuitBreaker = circuitBreaker;
+        this.pollingBulkhead = pollingBulkhead;
     }
 
-
-    private void startPhishingScanWorkers() {
+    @PostConstruct
+    public void startPhishingScanWorkers() {
         int numberOfWorkers = 5;
         for (int i = 0; i < numberOfWorkers; i++) {
             phishingScanExecutor.submit(() -> {
                 while (isRunning) {
                     try {
-                        EmailContent emailContent = phishingScanQueue.poll(1, TimeUnit.SECONDS);
-                        if (emailContent != null) {
+                        DurableScanQueue.Entry entry = phishingScanQueue.poll(1, TimeUnit.SECONDS);
+                        if (entry != null) {
+                            EmailContent emailContent = entry.content();
                             try {
                                 messageExtractorService.performPhishingScan(
                                         emailContent
@@ -65,6 +111,11 @@ public class MailboxConnectionServiceImpl implements MailboxConnectionService {
                             } catch (Exception e) {
                                 log.error("Error during phishing scan for message {}: {}",
                                         emailContent.messageId(), e.getMessage());
+                            } finally {
+                                // a scan interrupted by shutdown stays unacknowledged and is redone after restart
+                                if (!Thread.currentThread().isInterrupted()) {
+                                    phishingScanQueue.ack(entry);
+                                }
                             }
                         }
                     } catch (InterruptedException e) {
@@ -76,108 +127,462 @@ public class MailboxConnectionServiceImpl implements MailboxConnectionService {
         }
     }
 
-    private Properties createMailProperties() {
-        Properties props = new Properties();
-        props.put("mail.store.protocol", "imap");
-        props.put("mail.imap.ssl.enable", "true");
-        props.put("mail.imap.ssl.trust", "*");
-        props.put("mail.imap.connectiontimeout", CONNECTION_TIMEOUT);
-        props.put("mail.imap.timeout", CONNECTION_TIMEOUT);
-        props.put("mail.imap.writetimeout", CONNECTION_TIMEOUT);
-        return props;
-    }
-
     private String getMailboxKey(String email, String userId) {
         return email + "_" + userId;
     }
 
-    private void pollMailbox(EmailConfigRequest config) {
-        Store store = null;
-        Folder inbox = null;
+    private record PollResult(int newMessages, boolean idleSupported) { }
+
+    private PollResult pollMailbox(EmailConfigRequest config) {
         String mailboxKey = getMailboxKey(config.username(), config.userId());
         try {
             log.info("Starting polling cycle for {}", config.username());
 
-            Mailbox mailbox = mailboxRepository.findByEmailAndUserId(config.username(), config.userId())
-                    .orElseThrow(() -> new RuntimeException("Mailbox not found for this user"));
+            Mailbox mailbox = mailboxCache.findByEmailAndUserId(config.username(), config.userId())
+                    .orElseThrow(() -> new MailboxNotFoundException("Mailbox not found for this user"));
 
-            Session session = Session.getInstance(createMailProperties());
-            //session.setDebug(true);
-            store = session.getStore(config.protocol());
+            Store store;
             try {
-                store.connect(config.host(), config.username(), mailbox.getPassword());
+                store = connectionPool.acquire(mailboxKey, config, mailbox.getPassword());
             } catch (AuthenticationFailedException e) {
                 notificationService.notifyConnectionError(config.username(), config.userId(), "Invalid credentials");
-                return;
+                return new PollResult(0, false);
             }
 
             if (initialConnectionNotified.add(mailboxKey)) {
                 notificationService.notifyConnectionSuccess(config.username(), config.userId());
             }
 
-            inbox = store.getFolder("INBOX");
-            inbox.open(Folder.READ_WRITE);
-
-            Calendar cal = Calendar.getInstance();
-            cal.add(Calendar.MINUTE, -1);
-            Date oneMinuteAgo = cal.getTime();
+            int newMessages;
+            try {
+                newMessages = pollFolders(store, mailbox, config, resolveFolders(store, mailbox, mailboxKey));
+            } catch (StoreClosedException | FolderClosedException e) {
+                // the server dropped the pooled connection since the last cycle
+                log.info("Pooled connection for {} was closed by the server, reconnecting", config.username());
+                connectionPool.invalidate(mailboxKey);
+                store = connectionPool.acquire(mailboxKey, config, mailbox.getPassword());
+                newMessages = pollFolders(store, mailbox, config, resolveFolders(store, mailbox, mailboxKey));
+            }
 
-            int messageCount = inbox.getMessageCount();
-            int startIndex = Math.max(messageCount - 10, 1);
-            Message[] lastMessages = inbox.getMessages(startIndex, messageCount);
+            boolean idleSupported = store instanceof IMAPStore imapStore && imapStore.hasCapability("IDLE");
+            connectionPool.release(mailboxKey);
+            return new PollResult(newMessages, idleSupported);
+        } catch (HostCapacityException | MailboxNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            connectionPool.invalidate(mailboxKey);
+            log.error("Error during polling for {}: {}", config.username(), e.getMessage(), e);
+            throw new EmailsFetchingException("Failed to poll mailbox", e);
+        }
+    }
 
-            List<Message> recentMessages = new ArrayList<>();
-            for (Message message : lastMessages) {
-                Date receivedDate = message.getReceivedDate();
-                Date sentDate = message.getSentDate();
+    /**
+     * Checks the folders one after another over the same connection: each folder is opened only
+     * when STATUS shows it changed, and closed again before the next one.
+     */
+    private int pollFolders(Store store, Mailbox mailbox, EmailConfigRequest config, List<String> folderNames)
+            throws MessagingException {
+        boolean condstore = store instanceof IMAPStore imapStore && imapStore.hasCapability("CONDSTORE");
+        int queued = 0;
+        for (String folderName : folderNames) {
+            IMAPFolder folder = (IMAPFolder) store.getFolder(folderName);
+            if (isUnchanged(folder, mailbox, config, condstore)) {
+                log.debug("No changes in {} {} since the last poll", config.username(), folder.getFullName());
+                continue;
+            }
 
-                if ((receivedDate != null && receivedDate.after(oneMinuteAgo)) ||
-                        (sentDate != null && sentDate.after(oneMinuteAgo))) {
-                    recentMessages.add(message);
-                    log.debug("Found recent message - Received: {}, Sent: {}", receivedDate, sentDate);
+            openReadOnly(folder, condstore);
+            try {
+                queued += syncNewMessages(folder, mailbox, config);
+            } finally {
+                if (folder.isOpen()) {
+                    folder.close(false);
                 }
             }
+        }
+        lastCheckTimes.put(config.username(), new Date());
+        log.info("Completed polling cycle for {}, queued {} messages", config.username(), queued);
+        return queued;
+    }
 
-            log.info("Found {} messages for {} in last minute", recentMessages.size(), config.username());
-
-            for (Message message : recentMessages) {
-                try {
-                    String messageId = getMessageId(message, config.username());
-                    if (processedMessageIds.add(messageId)) {
-                        EmailContent emailContent = EmailContent.fromMessage(
-                                message,
-                                config.username(),
-                                config.userId(),
-                                messageId
-                        );
-
-                        if (!phishingScanQueue.offer(emailContent)) {
-                            log.warn("Unable to add message {} to phishing scan queue - queue might be full", messageId);
-                        }
-                    }
-                } catch (MessagingException e) {
-                    log.error("Error processing message: {}", e.getMessage());
+    private record ResolvedFolders(List<String> wanted, List<String> names) { }
+
+    /**
+     * Maps the mailbox's folder list (or the default one) to folders that exist on the server.
+     * Entries like {@code \Junk} are matched against the SPECIAL-USE attributes from LIST, falling back
+     * to a folder named Spam or Junk on servers that don't advertise them. The result is cached until
+     * monitoring of the mailbox stops or its folder list is edited; folders dropped by an edit lose their
+     * checkpoints, so adding one back later starts from its newest message again.
+     */
+    private List<String> resolveFolders(Store store, Mailbox mailbox, String mailboxKey) throws MessagingException {
+        List<String> wanted = wantedFolders(mailbox);
+        ResolvedFolders cached = monitoredFolders.get(mailboxKey);
+        if (cached != null && cached.wanted().equals(wanted)) {
+            return cached.names();
+        }
+
+        Folder[] available = store.getDefaultFolder().list("*");
+        Set<String> folderNames = new LinkedHashSet<>();
+        for (String name : wanted) {
+            Optional<String> match = name.startsWith("\\")
+                    ? findSpecialUseFolder(available, name)
+                    : Arrays.stream(available)
+                            .map(Folder::getFullName)
+                            .filter(fullName -> fullName.equals(name) || (INBOX.equalsIgnoreCase(name) && INBOX.equalsIgnoreCase(fullName)))
+                            .findFirst();
+            match.ifPresentOrElse(folderNames::add,
+                    () -> log.warn("Folder {} not found in mailbox {}, skipping it", name, mailbox.getEmail()));
+        }
+        if (folderNames.isEmpty()) {
+            folderNames.add(INBOX);
+        }
+
+        List<String> resolved = List.copyOf(folderNames);
+        monitoredFolders.put(mailboxKey, new ResolvedFolders(wanted, resolved));
+        if (cached != null) {
+            cached.names().stream()
+                    .filter(name -> !resolved.contains(name))
+                    .forEach(name -> {
+                        checkpoints.remove(mailboxKey + "/" + name);
+                        checkpointRepository.deleteByMailboxIdAndFolderName(mailbox.getId(), name);
+                    });
+        }
+        log.info("Monitoring folders {} of {}", resolved, mailbox.getEmail());
+        return resolved;
+    }
+
+    private List<String> wantedFolders(Mailbox mailbox) {
+        return mailbox.getFolders() == null || mailbox.getFolders().isEmpty()
+                ? List.copyOf(defaultFolders)
+                : List.copyOf(mailbox.getFolders());
+    }
+
+    private Optional<String> findSpecialUseFolder(Folder[] available, String attribute) throws MessagingException {
+        for (Folder folder : available) {
+            if (folder instanceof IMAPFolder imapFolder
+                    && Arrays.stream(imapFolder.getAttributes()).anyMatch(attribute::equalsIgnoreCase)) {
+                return Optional.of(folder.getFullName());
+            }
+        }
+        if ("\\Junk".equalsIgnoreCase(attribute)) {
+            return Arrays.stream(available)
+                    .map(Folder::getFullName)
+                    .filter(fullName -> {
+                        String leaf = fullName.substring(Math.max(fullName.lastIndexOf('/'), fullName.lastIndexOf('.')) + 1);
+                        return leaf.equalsIgnoreCase("Spam") || leaf.equalsIgnoreCase("Junk");
+                    })
+                    .findFirst();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Asks the server for the folder's state with a STATUS command, without selecting it.
+     * The folder is unchanged when its HIGHESTMODSEQ (on CONDSTORE servers) is the one recorded after the
+     * last sync, or when UIDNEXT shows no UID was assigned past the checkpoint.
+     */
+    private boolean isUnchanged(IMAPFolder folder, Mailbox mailbox, EmailConfigRequest config, boolean condstore)
+            throws MessagingException {
+        FolderCheckpoint checkpoint = getCheckpoint(folder, mailbox, config);
+        if (checkpoint.getId() == null) {
+            return false;
+        }
+
+        String[] items = condstore
+                ? new String[]{"UIDNEXT", "UIDVALIDITY", "HIGHESTMODSEQ"}
+                : new String[]{"UIDNEXT", "UIDVALIDITY"};
+        Status status = (Status) folder.doCommand(protocol -> protocol.status(folder.getFullName(), items));
+        if (status.uidvalidity != checkpoint.getUidValidity()) {
+            return false;
+        }
+        if (condstore && status.highestmodseq > 0 && status.highestmodseq == checkpoint.getHighestModSeq()) {
+            return true;
+        }
+        return status.uidnext > 0 && status.uidnext - 1 <= checkpoint.getLastUid();
+    }
+
+    /**
+     * Opens the folder read-only, which also makes body fetches use BODY.PEEK and leave \Seen alone.
+     * On CONDSTORE servers the SELECT enables mod-sequences, so the folder reports its HIGHESTMODSEQ.
+     */
+    private void openReadOnly(IMAPFolder folder, boolean condstore) throws MessagingException {
+        if (condstore) {
+            folder.open(Folder.READ_ONLY, ResyncData.CONDSTORE);
+        } else {
+            folder.open(Folder.READ_ONLY);
+        }
+    }
+
+    private FolderCheckpoint getCheckpoint(IMAPFolder folder, Mailbox mailbox, EmailConfigRequest config) {
+        String checkpointKey = getMailboxKey(config.username(), config.userId()) + "/" + folder.getFullName();
+        return checkpoints.computeIfAbsent(checkpointKey, key ->
+                checkpointRepository.findByMailboxIdAndFolderName(mailbox.getId(), folder.getFullName())
+                        .orElseGet(() -> {
+                            FolderCheckpoint created = new FolderCheckpoint();
+                            created.setMailbox(mailbox);
+                            created.setFolderName(folder.getFullName());
+                            return created;
+                        }));
+    }
+
+    /**
+     * Queues every message above the folder's UID checkpoint and advances the checkpoint past the ones queued.
+     * The first sync of a folder, or one whose UIDVALIDITY changed, only records where the folder ends.
+     * Queueing stops at the first message that can't be fetched or doesn't fit in the scan queue; the
+     * checkpoint then stays in front of it, so the next sync picks it up again.
+     */
+    private int syncNewMessages(IMAPFolder folder, Mailbox mailbox, EmailConfigRequest config) throws MessagingException {
+        String checkpointKey = getMailboxKey(config.username(), config.userId()) + "/" + folder.getFullName();
+        FolderCheckpoint checkpoint = getCheckpoint(folder, mailbox, config);
+
+        long uidValidity = folder.getUIDValidity();
+        // -1 unless the folder was opened with CONDSTORE
+        long highestModSeq = folder.getHighestModSeq();
+        if (checkpoint.getId() == null || checkpoint.getUidValidity() != uidValidity) {
+            checkpoint.setUidValidity(uidValidity);
+            checkpoint.setLastUid(getLastUid(folder));
+            checkpoint.setHighestModSeq(highestModSeq);
+            checkpoints.put(checkpointKey, checkpointRepository.save(checkpoint));
+            log.info("Initialized checkpoint for {} {} at UID {}", config.username(), folder.getFullName(), checkpoint.getLastUid());
+            return 0;
+        }
+
+        long lastUid = checkpoint.getLastUid();
+        // UID FETCH lastUid+1:* always answers with at least the newest message, even when it is older
+        Message[] candidates = folder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID);
+        List<Message> newMessages = new ArrayList<>();
+        long highestUid = lastUid;
+        for (Message message : candidates) {
+            long uid = folder.getUID(message);
+            if (uid > lastUid) {
+                newMessages.add(message);
+                highestUid = Math.max(highestUid, uid);
+            }
+        }
+
+        boolean modSeqChanged = highestModSeq > 0 && highestModSeq != checkpoint.getHighestModSeq();
+        if (newMessages.isEmpty()) {
+            if (modSeqChanged) {
+                // only flags changed; recording the new HIGHESTMODSEQ lets the next STATUS skip the folder again
+                checkpoint.setHighestModSeq(highestModSeq);
+                checkpoints.put(checkpointKey, checkpointRepository.save(checkpoint));
+            }
+            return 0;
+        }
+
+        log.info("Found {} new messages for {} in {}", newMessages.size(), config.username(), folder.getFullName());
+        prefetch(folder, newMessages);
+
+        long queuedUpTo = lastUid;
+        int queued = 0;
+        try {
+            for (Message message : newMessages) {
+                if (!queueMessage(message, mailbox, config)) {
+                    break;
                 }
+                queuedUpTo = folder.getUID(message);
+                queued++;
             }
+        } finally {
+            if (queuedUpTo > lastUid) {
+                checkpoint.setLastUid(queuedUpTo);
+                // a folder left partly unqueued must not look unchanged to the next STATUS
+                if (queuedUpTo == highestUid && modSeqChanged) {
+                    checkpoint.setHighestModSeq(highestModSeq);
+                }
+                checkpoints.put(checkpointKey, checkpointRepository.save(checkpoint));
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Loads everything the queueing path reads from each message in a single FETCH, instead of one
+     * round trip per message and attribute. JavaMail's ENVELOPE item also brings INTERNALDATE and size,
+     * and CONTENT_INFO brings the BODYSTRUCTURE used to fetch only the text parts.
+     */
+    private void prefetch(IMAPFolder folder, List<Message> messages) throws MessagingException {
+        FetchProfile profile = new FetchProfile();
+        profile.add(FetchProfile.Item.ENVELOPE);
+        profile.add(FetchProfile.Item.CONTENT_INFO);
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        profile.add("Message-ID");
+        folder.fetch(messages.toArray(new Message[0]), profile);
+    }
+
+    private long getLastUid(IMAPFolder folder) throws MessagingException {
+        long uidNext = folder.getUIDNext();
+        if (uidNext > 0) {
+            return uidNext - 1;
+        }
+        int messageCount = folder.getMessageCount();
+        return messageCount > 0 ? folder.getUID(folder.getMessage(messageCount)) : 0;
+    }
+
+    /**
+     * Hands the message to the scan queue unless it was already queued or scanned. Returns false when the
+     * queue is full. The message is remembered as queued only once it is in the journal.
+     */
+    private boolean queueMessage(Message message, Mailbox mailbox, EmailConfigRequest config) throws MessagingException {
+        String messageId = getMessageId(message, config.username());
+        // the in-memory filter answers for everything seen since startup, the ledger for the rest
+        if (processedMessages.contains(messageId) || processedMessageLedger.contains(mailbox.getId(), messageId)) {
+            return true;
+        }
+        EmailContent emailContent = EmailContent.fromMessage(
+                message,
+                config.username(),
+                config.userId(),
+                messageId
+        );
+
+        if (!phishingScanQueue.offer(emailContent)) {
+            log.warn("Unable to add message {} to phishing scan queue - queue might be full, retrying on the next poll", messageId);
+            return false;
+        }
+        processedMessages.markIfNew(messageId);
+        return true;
+    }
 
-            lastCheckTimes.put(config.username(), new Date());
-            log.info("Completed polling cycle for {}, queued {} messages",
-                    config.username(), recentMessages.size());
+    private void runIdleSession(EmailConfigRequest config) {
+        IMAPFolder inbox = null;
+        MonitoringTask keepAlive = null;
+        String mailboxKey = getMailboxKey(config.username(), config.userId());
+        try {
+            Mailbox mailbox = mailboxCache.findByEmailAndUserId(config.username(), config.userId())
+                    .orElseThrow(() -> new MailboxNotFoundException("Mailbox not found for this user"));
+
+            // the IDLE session keeps its pooled connection leased for as long as it runs
+            Store store = connectionPool.acquire(mailboxKey, config, mailbox.getPassword());
+            List<String> folderNames = resolveFolders(store, mailbox, mailboxKey);
+            // IDLE watches a single folder; the others are checked in between, on the same connection
+            List<String> secondaryFolders = folderNames.subList(1, folderNames.size());
+            inbox = (IMAPFolder) store.getFolder(folderNames.getFirst());
+            inbox.open(Folder.READ_ONLY);
+
+            // Any command issued on the folder from another thread ends the current IDLE,
+            // so a periodic NOOP makes the loop below re-issue IDLE before the server times it out.
+            IMAPFolder idleFolder = inbox;
+            long wakeInterval = secondaryFolders.isEmpty()
+                    ? IDLE_KEEPALIVE_INTERVAL
+                    : Math.min(IDLE_KEEPALIVE_INTERVAL, secondaryFolderInterval);
+            keepAlive = monitoringEngine.schedule(
+                    mailboxKey + "-keepalive",
+                    () -> {
+                        keepIdleAlive(idleFolder, config);
+                        return wakeInterval;
+                    },
+                    wakeInterval
+            );
+
+            log.info("Started IDLE session for {}", config.username());
+            long nextSecondaryCheck = 0;
+            while (isRunning && !Thread.currentThread().isInterrupted()) {
+                Optional<Mailbox> current = mailboxCache.findByEmailAndUserId(config.username(), config.userId());
+                if (current.isPresent() && !wantedFolders(current.get()).equals(wantedFolders(mailbox))) {
+                    // the session watches the folders it started with; polling resolves the new list and comes back to IDLE
+                    log.info("Folders of {} were changed, restarting its monitoring", config.username());
+                    fallBackToPolling(config);
+                    return;
+                }
+                // also picks up anything that arrived between the last poll and the first IDLE
+                syncNewMessages(inbox, mailbox, config);
+                lastCheckTimes.put(config.username(), new Date());
 
+                if (!secondaryFolders.isEmpty() && System.currentTimeMillis() >= nextSecondaryCheck) {
+                    // closing the idle folder hands its connection back for the other folders' pass
+                    inbox.close(false);
+                    pollFolders(store, mailbox, config, secondaryFolders);
+                    inbox.open(Folder.READ_ONLY);
+                    nextSecondaryCheck = System.currentTimeMillis() + secondaryFolderInterval;
+                    continue;
+                }
+                inbox.idle();
+            }
         } catch (Exception e) {
-            log.error("Error during polling for {}: {}", config.username(), e.getMessage(), e);
-            throw new EmailsFetchingException("Failed to poll mailbox", e);
+            if (isRunning && !Thread.currentThread().isInterrupted()) {
+                log.warn("IDLE session for {} ended, falling back to polling: {}", config.username(), e.getMessage());
+                fallBackToPolling(config);
+            }
         } finally {
+            if (keepAlive != null) {
+                keepAlive.cancel();
+            }
+            connectionPool.invalidate(mailboxKey);
+        }
+    }
+
+    private void keepIdleAlive(IMAPFolder folder, EmailConfigRequest config) {
+        try {
+            folder.doCommand(protocol -> {
+                protocol.noop();
+                return null;
+            });
+        } catch (MessagingException e) {
+            log.warn("IDLE keepalive failed for {}: {}", config.username(), e.getMessage());
+        }
+    }
+
+    private void switchToIdle(EmailConfigRequest config) {
+        String mailboxKey = getMailboxKey(config.username(), config.userId());
+        MonitoringTask idleTask = monitoringEngine.runSession(mailboxKey + "-idle", () -> runIdleSession(config));
+        if (pollingTasks.replace(mailboxKey, idleTask) == null) {
+            idleTask.cancel();
+            return;
+        }
+        log.info("Mailbox {} supports IDLE, switched from polling to push monitoring", config.username());
+    }
+
+    private MonitoringTask schedulePolling(EmailConfigRequest config, long initialDelay) {
+        String mailboxKey = getMailboxKey(config.username(), config.userId());
+        return monitoringEngine.schedule(mailboxKey, () -> {
+            if (!pollingBulkhead.tryEnter(config.host())) {
+                log.debug("Polling slots for {} are busy, deferring {}", config.host(), config.username());
+                return pollingBulkhead.getRetryDelay();
+            }
             try {
-                if (inbox != null && inbox.isOpen()) {
-                    inbox.close(false);
+                circuitBreaker.beforeAttempt(mailboxKey);
+                PollResult result = pollMailbox(config);
+                if (circuitBreaker.onSuccess(mailboxKey)) {
+                    log.info("Connection to {} recovered", config.username());
+                    notificationService.notifyConnectionSuccess(config.username(), config.userId());
                 }
-                if (store != null && store.isConnected()) {
-                    store.close();
+                if (idleEnabled && result.idleSupported()) {
+                    pollingScheduler.stop(mailboxKey);
+                    switchToIdle(config);
+                    return -1;
                 }
-            } catch (MessagingException e) {
-                log.error("Error cleaning up resources: {}", e.getMessage());
+                return pollingScheduler.next(mailboxKey, result.newMessages());
+            } catch (MailboxNotFoundException e) {
+                // deleted since monitoring started; retrying would only hold on to the connection and its host slot
+                log.info("Mailbox {} no longer exists, stopping its monitoring", config.username());
+                stopLocalMonitoring(mailboxKey);
+                return -1;
+            } catch (HostCapacityException e) {
+                // every connection to the host is in use; not the mailbox's fault, so the breaker isn't told.
+                // It asks again soon, so that it doesn't lose the place it now holds in the host's line
+                log.info("{}, {} is waiting for a slot", e.getMessage(), config.username());
+                return pollingBulkhead.getRetryDelay();
+            } catch (Exception e) {
+                MailboxCircuitBreaker.Failure failure = circuitBreaker.onFailure(mailboxKey);
+                log.error("Error during polling of {}, retrying in {} ms: {}", config.username(), failure.retryDelay(), e.getMessage());
+                if (failure.opened()) {
+                    notificationService.notifyConnectionError(config.username(), config.userId(), "Connection dropped by server");
+                }
+                return failure.retryDelay();
+            } finally {
+                pollingBulkhead.exit(config.host());
             }
+        }, initialDelay);
+    }
+
+    private void fallBackToPolling(EmailConfigRequest config) {
+        String mailboxKey = getMailboxKey(config.username(), config.userId());
+        pollingScheduler.start(mailboxKey);
+        MonitoringTask pollingTask = schedulePolling(config, pollingScheduler.next(mailboxKey, 0));
+        if (pollingTasks.replace(mailboxKey, pollingTask) == null) {
+            pollingTask.cancel();
+            pollingScheduler.stop(mailboxKey);
         }
     }
 
@@ -190,26 +595,56 @@ public class MailboxConnectionServiceImpl implements MailboxConnectionService {
             return;
         }
 
-        mailboxConfigs.put(mailboxKey, config);
-        lastCheckTimes.put(mailboxKey, new Date());
+        Optional<Mailbox> mailbox = mailboxCache.findByEmailAndUserId(config.username(), config.userId());
+        if (mailbox.isPresent()) {
+            setMonitored(mailbox.get(), true);
+            if (!leaseService.claim(mailbox.get())) {
+                log.info("Mailbox {} for user {} is already monitored by another node", config.username(), config.userId());
+                return;
+            }
+        }
 
-        ScheduledFuture<?> pollingTask = scheduledExecutor.scheduleAtFixedRate(
-                () -> {
-                    try {
-                        pollMailbox(config);
-                    } catch (Exception e) {
-                        log.error("Error during polling: {}", e.getMessage());
-                        stopMailboxMonitoring(config.username(), config.userId());
-                        notificationService.notifyConnectionError(config.username(), config.userId(), "Connection dropped by server");
-                    }
-                },
-                0,
-                POLLING_INTERVAL,
-                TimeUnit.MILLISECONDS
-        );
+        startLocalMonitoring(config, 0);
+    }
+
+    /**
+     * Starts monitoring a mailbox this node already owns, without a user waiting on the result.
+     * The first connection is delayed to the next free slot of the host's reconnect ramp.
+     */
+    @Override
+    public void resumeMonitoring(EmailConfigRequest config) {
+        if (isRunning && !pollingTasks.containsKey(getMailboxKey(config.username(), config.userId()))) {
+            startLocalMonitoring(config, reconnectRamp.reserve(config.host()));
+        }
+    }
+
+    private void startLocalMonitoring(EmailConfigRequest config, long initialDelay) {
+        String mailboxKey = getMailboxKey(config.username(), config.userId());
+        pollingTasks.computeIfAbsent(mailboxKey, key -> {
+            mailboxConfigs.put(key, config);
+            lastCheckTimes.put(key, new Date());
+            log.info("Started polling monitoring for mailbox: {} with user {}", config.username(), config.userId());
+            return schedulePolling(config, pollingScheduler.start(key) + initialDelay);
+        });
+    }
+
+    /**
+     * Writes only the flag: the mailbox usually comes from the cache, and saving it whole would
+     * put back whatever it held when it was cached over newer changes to the row.
+     */
+    private void setMonitored(Mailbox mailbox, boolean monitored) {
+        mailboxRepository.updateMonitored(mailbox.getId(), monitored);
+        mailbox.setMonitored(monitored);
+    }
 
-        pollingTasks.put(mailboxKey, pollingTask);
-        log.info("Started polling monitoring for mailbox: {} with user {}", config.username(), config.userId());
+    @EventListener
+    public void onMailboxOwnershipChanged(MailboxOwnershipEvent event) {
+        EmailConfigRequest config = EmailConfigRequest.fromMailbox(event.mailbox());
+        if (!event.acquired()) {
+            stopLocalMonitoring(getMailboxKey(config.username(), config.userId()));
+        } else {
+            resumeMonitoring(config);
+        }
     }
 
     private String getMessageId(Message message, String email) throws MessagingException {
@@ -236,69 +671,65 @@ public class MailboxConnectionServiceImpl implements MailboxConnectionService {
     @Override
     public Map<String, Boolean> getMailboxConnectionStates(String userId) {
         Map<String, Boolean> states = new HashMap<>();
-        pollingTasks.forEach((key, future) -> {
+        pollingTasks.forEach((key, task) -> {
             if (key.endsWith("_" + userId)) {
                 String email = key.substring(0, key.lastIndexOf('_'));
-                states.put(email, !future.isDone() && !future.isCancelled());
+                states.put(email, task.isActive() && circuitBreaker.getState(key) == MailboxCircuitBreaker.State.CLOSED);
             }
         });
+        // mailboxes leased by other nodes are monitored too, just not from this process
+        leaseService.getLeasedEmails(userId).forEach(email -> states.putIfAbsent(email, true));
         return states;
     }
 
     @Override
     public void stopMailboxMonitoring(String email, String userId) {
-        String mailboxKey = getMailboxKey(email, userId);
-        ScheduledFuture<?> task = pollingTasks.remove(mailboxKey);
-        if (task != null) {
-            task.cancel(true);
-        }
-        mailboxConfigs.remove(mailboxKey);
-        lastCheckTimes.remove(mailboxKey);
-        initialConnectionNotified.remove(mailboxKey);
+        stopLocalMonitoring(getMailboxKey(email, userId));
+        mailboxCache.findByEmailAndUserId(email, userId).ifPresent(mailbox -> {
+            setMonitored(mailbox, false);
+            leaseService.release(mailbox);
+        });
         log.info("Stopped monitoring mailbox: {} for user {}", email, userId);
     }
 
     @Override
     public void stopAllMailboxMonitoring(String userId) {
-        List<String> keysToRemove = new ArrayList<>();
-        pollingTasks.forEach((key, task) -> {
-            if (key.endsWith("_" + userId)) {
-                task.cancel(true);
-                String email = key.substring(0, key.lastIndexOf('_'));
-                mailboxConfigs.remove(key);
-                lastCheckTimes.remove(key);
-                initialConnectionNotified.remove(key);
-                keysToRemove.add(key);
-                log.info("Stopped monitoring mailbox: {} for user {}", email, userId);
-            }
-        });
-        keysToRemove.forEach(pollingTasks::remove);
+        // mailboxes leased by other nodes aren't in the local task map; clearing their flag makes those nodes let go
+        mailboxRepository.findByUserId(userId)
+                .forEach(mailbox -> stopMailboxMonitoring(mailbox.getEmail(), userId));
+    }
+
+    private void stopLocalMonitoring(String mailboxKey) {
+        MonitoringTask task = pollingTasks.remove(mailboxKey);
+        if (task != null) {
+            task.cancel();
+        }
+        connectionPool.invalidate(mailboxKey);
+        pollingScheduler.stop(mailboxKey);
+        circuitBreaker.reset(mailboxKey);
+        monitoredFolders.remove(mailboxKey);
+        checkpoints.keySet().removeIf(key -> key.startsWith(mailboxKey + "/"));
+        mailboxConfigs.remove(mailboxKey);
+        lastCheckTimes.remove(mailboxKey);
+        initialConnectionNotified.remove(mailboxKey);
     }
 
     @PreDestroy
     public void cleanup() {
         isRunning = false;
 
-        Set<String> allUserIds = new HashSet<>();
-        pollingTasks.keySet().forEach(key -> {
-            String userId = key.substring(key.lastIndexOf('_') + 1);
-            allUserIds.add(userId);
-        });
-
-        allUserIds.forEach(this::stopAllMailboxMonitoring);
+        // monitoring intent stays persisted; the leases go back so that other nodes take over right away
+        List.copyOf(pollingTasks.keySet()).forEach(this::stopLocalMonitoring);
+        leaseService.releaseAll();
 
-        scheduledExecutor.shutdown();
+        monitoringEngine.shutdown();
         phishingScanExecutor.shutdown();
 
         try {
-            if (!scheduledExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
-                scheduledExecutor.shutdownNow();
-            }
             if (!phishingScanExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
                 phishingScanExecutor.shutdownNow();
             }
         } catch (InterruptedException e) {
-            scheduledExecutor.shutdownNow();
             phishingScanExecutor.shutdownNow();
             Thread.currentThread().interrupt();
         }
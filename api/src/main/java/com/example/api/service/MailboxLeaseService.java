@@ -0,0 +1,216 @@
+package com.example.api.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import com.example.api.model.ClusterNode;
+import com.example.api.model.Mailbox;
+import com.example.api.model.MailboxLease;
+import com.example.api.repository.ClusterNodeRepository;
+import com.example.api.repository.MailboxLeaseRepository;
+import com.example.api.repository.MailboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Spreads monitored mailboxes across the API instances sharing the database.
+ * Each node heartbeats into {@code cluster_nodes} and holds a time-limited lease per mailbox it monitors;
+ * a lease that is not renewed within the TTL is free for any other node to take over. On every heartbeat
+ * a node keeps at most its fair share (monitored mailboxes / live nodes, rounded up), so work drains
+ * towards newly started nodes and away from dead ones without any coordinator.
+ * With {@code monitoring.cluster.enabled=false} every claim succeeds and no lease rows are written.
+ */
+@Slf4j
+@Service
+public class MailboxLeaseService {
+
+    private final MailboxRepository mailboxRepository;
+    private final MailboxLeaseRepository leaseRepository;
+    private final ClusterNodeRepository clusterNodeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final long leaseTtl;
+    private final String nodeId;
+    // mailboxes this node was told to monitor, so that a lease that disappeared can still be stopped locally
+    private final Map<Long, Mailbox> held = new ConcurrentHashMap<>();
+
+    public MailboxLeaseService(MailboxRepository mailboxRepository,
+                               MailboxLeaseRepository leaseRepository,
+                               ClusterNodeRepository clusterNodeRepository,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${monitoring.cluster.enabled:false}") boolean enabled,
+                               @Value("${monitoring.cluster.lease-ttl:30000}") long leaseTtl,
+                               @Value("${monitoring.cluster.node-id:}") String nodeId) {
+        this.mailboxRepository = mailboxRepository;
+        this.leaseRepository = leaseRepository;
+        this.clusterNodeRepository = clusterNodeRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.leaseTtl = leaseTtl;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Takes the lease on a mailbox for this node. Returns false when another live node already holds it.
+     */
+    public boolean claim(Mailbox mailbox) {
+        if (!enabled) {
+            return true;
+        }
+        Date now = new Date();
+        return tryClaim(mailbox.getId(), now, new Date(now.getTime() + leaseTtl));
+    }
+
+    public void release(Mailbox mailbox) {
+        if (enabled) {
+            leaseRepository.release(mailbox.getId(), nodeId);
+            held.remove(mailbox.getId());
+        }
+    }
+
+    public void releaseAll() {
+        if (!enabled) {
+            return;
+        }
+        leaseRepository.findByOwnerId(nodeId)
+                .forEach(lease -> leaseRepository.release(lease.getMailboxId(), nodeId));
+        held.clear();
+        log.info("Released all mailbox leases held by {}", nodeId);
+    }
+
+    /**
+     * Emails of the user's mailboxes monitored by any live node, including this one.
+     */
+    public Set<String> getLeasedEmails(String userId) {
+        if (!enabled) {
+            return Set.of();
+        }
+        return new HashSet<>(leaseRepository.findLeasedEmails(userId, new Date()));
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.cluster.heartbeat-interval:10000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebalance();
+        } catch (Exception e) {
+            log.error("Cluster heartbeat failed for {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void rebalance() {
+        Date now = new Date();
+        Date expiresAt = new Date(now.getTime() + leaseTtl);
+
+        clusterNodeRepository.save(new ClusterNode(nodeId, now));
+        clusterNodeRepository.deleteByLastHeartbeatBefore(new Date(now.getTime() - 10 * leaseTtl));
+        leaseRepository.renew(nodeId, expiresAt);
+
+        long liveNodes = Math.max(1, clusterNodeRepository.countByLastHeartbeatAfter(new Date(now.getTime() - leaseTtl)));
+        Map<Long, Mailbox> monitored = mailboxRepository.findByMonitoredTrue().stream()
+                .collect(Collectors.toMap(Mailbox::getId, Function.identity()));
+        int fairShare = (int) Math.ceil((double) monitored.size() / liveNodes);
+
+        List<MailboxLease> leases = leaseRepository.findByOwnerId(nodeId);
+        List<Long> owned = new ArrayList<>(leases.stream()
+                .map(MailboxLease::getMailboxId)
+                .toList());
+
+        // leases on mailboxes the user stopped elsewhere are dropped first
+        for (MailboxLease lease : leases) {
+            if (!monitored.containsKey(lease.getMailboxId())) {
+                leaseRepository.release(lease.getMailboxId(), nodeId);
+                owned.remove(lease.getMailboxId());
+                stopLocally(lease.getMailboxId(), lease.getMailbox());
+                log.info("Dropped lease on mailbox {}, which is no longer monitored", lease.getMailboxId());
+            }
+        }
+
+        // a lease that is gone altogether was deleted with its mailbox, or taken over after it expired
+        for (Long mailboxId : List.copyOf(held.keySet())) {
+            if (!owned.contains(mailboxId)) {
+                stopLocally(mailboxId, null);
+                log.info("Lost the lease on mailbox {}, stopped monitoring it", mailboxId);
+            }
+        }
+
+        // then the surplus, so that freshly joined nodes can pick it up on their next heartbeat
+        while (owned.size() > fairShare) {
+            Long mailboxId = owned.removeLast();
+            leaseRepository.release(mailboxId, nodeId);
+            stopLocally(mailboxId, monitored.get(mailboxId));
+            log.info("Handed over mailbox {} to rebalance {} mailboxes across {} nodes",
+                    mailboxId, monitored.size(), liveNodes);
+        }
+
+        List<Mailbox> candidates = new ArrayList<>(monitored.values());
+        // nodes walking the list in the same order would all race for the same rows
+        Collections.shuffle(candidates);
+        for (Mailbox mailbox : candidates) {
+            if (owned.size() >= fairShare) {
+                break;
+            }
+            if (!owned.contains(mailbox.getId()) && tryClaim(mailbox.getId(), now, expiresAt)) {
+                owned.add(mailbox.getId());
+                log.info("Took over monitoring of {}", mailbox.getEmail());
+            }
+        }
+
+        // idempotent on the listener side; also restarts local monitoring that stopped while the lease was kept
+        owned.forEach(mailboxId -> {
+            held.put(mailboxId, monitored.get(mailboxId));
+            eventPublisher.publishEvent(new MailboxOwnershipEvent(monitored.get(mailboxId), true));
+        });
+    }
+
+    /**
+     * Tells this node to stop monitoring a mailbox it no longer holds the lease on.
+     */
+    private void stopLocally(Long mailboxId, Mailbox mailbox) {
+        Mailbox known = held.remove(mailboxId);
+        Mailbox stopped = known != null ? known : mailbox;
+        if (stopped != null) {
+            eventPublisher.publishEvent(new MailboxOwnershipEvent(stopped, false));
+        }
+    }
+
+    private boolean tryClaim(Long mailboxId, Date now, Date expiresAt) {
+        if (leaseRepository.takeOver(mailboxId, nodeId, expiresAt, now) > 0) {
+            return true;
+        }
+        try {
+            leaseRepository.insertLease(mailboxId, nodeId, expiresAt);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // a live lease exists, or another node inserted one first
+            return false;
+        }
+    }
+}
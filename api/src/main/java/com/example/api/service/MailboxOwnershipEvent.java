@@ -0,0 +1,8 @@
+package com.example.api.service;
+
+import com.example.api.model.Mailbox;
+
+/**
+ * Published when this node gains or loses the lease on a monitored mailbox.
+ */
+public record MailboxOwnershipEvent(Mailbox mailbox, boolean acquired) { }
@@ -14,10 +14,15 @@ import org.springframework.stereotype.Service;
 public class MailboxServiceImpl implements MailboxService {
 
    private final MailboxRepository mailboxRepository;
+   private final MailboxCache mailboxCache;
+   private final MailboxConnectionService mailboxConnectionService;
 
     @Autowired
-    public MailboxServiceImpl(MailboxRepository mailboxRepository) {
+    public MailboxServiceImpl(MailboxRepository mailboxRepository, MailboxCache mailboxCache,
+                              MailboxConnectionService mailboxConnectionService) {
         this.mailboxRepository = mailboxRepository;
+        this.mailboxCache = mailboxCache;
+        this.mailboxConnectionService = mailboxConnectionService;
     }
 
     @Override
@@ -59,12 +64,23 @@ public class MailboxServiceImpl implements MailboxService {
         if (mailbox.getType() != null) {
             existingMailbox.setType(mailbox.getType());
         }
+        if (mailbox.getFolders() != null) {
+            existingMailbox.setFolders(mailbox.getFolders());
+        }
 
-        return mailboxRepository.save(existingMailbox);
+        Mailbox saved = mailboxRepository.save(existingMailbox);
+        // only once the change is committed, so a concurrent lookup can't cache the old row again;
+        // dropping by id also clears the entry under the old email
+        mailboxCache.invalidate(saved);
+        return saved;
     }
 
     @Override
     public void deleteMailbox(long theId) {
+        // stops the local task and gives up the lease; a node holding the lease drops it once it sees the cleared flag
+        mailboxRepository.findById(theId).ifPresent(mailbox ->
+                mailboxConnectionService.stopMailboxMonitoring(mailbox.getEmail(), mailbox.getUserId()));
         mailboxRepository.deleteById(theId);
+        mailboxCache.invalidate(theId);
     }
 }
@@ -0,0 +1,157 @@
+package com.example.api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers which messages were already queued for a scan, within a bounded window.
+ * Message identities are reduced to 64-bit FNV-1a hashes and kept in a ring of open-addressing
+ * {@code long[]} tables, one per generation. New entries go into the newest generation; once it is
+ * full or older than its share of {@code max-age}, the oldest generation is dropped wholesale.
+ * Each entry costs 16 to 32 bytes of table space, whatever the length of the Message-ID.
+ */
+@Component
+public class MessageDedupFilter {
+
+    private static final int GENERATIONS = 4;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final LongHashSet[] generations = new LongHashSet[GENERATIONS];
+    private final int generationCapacity;
+    private final long generationAge;
+    private int current;
+    private long currentStartedAt;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public MessageDedupFilter(@Value("${monitoring.dedup.max-entries:1000000}") int maxEntries,
+                              @Value("${monitoring.dedup.max-age:604800000}") long maxAge,
+                              MeterRegistry meterRegistry) {
+        this.generationCapacity = Math.max(1, maxEntries / GENERATIONS);
+        this.generationAge = maxAge / GENERATIONS;
+        for (int i = 0; i < GENERATIONS; i++) {
+            generations[i] = new LongHashSet(generationCapacity);
+        }
+        this.currentStartedAt = System.currentTimeMillis();
+
+        this.hits = Counter.builder("dedup.hits").description("Messages recognised as already queued").register(meterRegistry);
+        this.misses = Counter.builder("dedup.misses").description("Messages seen for the first time").register(meterRegistry);
+        this.evictions = Counter.builder("dedup.evictions").description("Entries dropped with their generation").register(meterRegistry);
+        Gauge.builder("dedup.size", this, MessageDedupFilter::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns true if the message identity was recorded within the window, without recording it.
+     */
+    public synchronized boolean contains(String identity) {
+        long hash = hash(identity);
+        for (LongHashSet generation : generations) {
+            if (generation.contains(hash)) {
+                hits.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the message identity and returns true if it was not seen within the window.
+     */
+    public synchronized boolean markIfNew(String identity) {
+        long hash = hash(identity);
+        for (LongHashSet generation : generations) {
+            if (generation.contains(hash)) {
+                hits.increment();
+                return false;
+            }
+        }
+        rotateIfNeeded();
+        generations[current].add(hash);
+        misses.increment();
+        return true;
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (LongHashSet generation : generations) {
+            size += generation.size;
+        }
+        return size;
+    }
+
+    private void rotateIfNeeded() {
+        long now = System.currentTimeMillis();
+        if (generations[current].size < generationCapacity && now - currentStartedAt < generationAge) {
+            return;
+        }
+        current = (current + 1) % GENERATIONS;
+        evictions.increment(generations[current].size);
+        generations[current].clear();
+        currentStartedAt = now;
+    }
+
+    public static long hash(String identity) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : identity.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        // 0 marks an empty slot
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Linear-probing set of non-zero longs, sized for the generation capacity at a load factor of 0.5.
+     */
+    private static final class LongHashSet {
+        private final long[] slots;
+        private final int mask;
+        private int size;
+
+        private LongHashSet(int capacity) {
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+            this.slots = new long[tableSize];
+            this.mask = tableSize - 1;
+        }
+
+        private boolean contains(long value) {
+            for (int i = index(value); ; i = (i + 1) & mask) {
+                if (slots[i] == value) {
+                    return true;
+                }
+                if (slots[i] == 0) {
+                    return false;
+                }
+            }
+        }
+
+        private void add(long value) {
+            int i = index(value);
+            while (slots[i] != 0) {
+                if (slots[i] == value) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = value;
+            size++;
+        }
+
+        private int index(long value) {
+            return (int) (value ^ (value >>> 32)) & mask;
+        }
+
+        private void clear() {
+            Arrays.fill(slots, 0);
+            size = 0;
+        }
+    }
+}
@@ -6,7 +6,6 @@ import java.util.regex.Pattern;
 import com.example.api.dto.EmailContent;
 import com.example.api.model.PhishingScanResult;
 import com.example.api.model.ScanLog;
-import com.example.api.repository.MailboxRepository;
 import com.example.api.repository.ScanLogRepository;
 import org.nibor.autolink.*;
 import lombok.extern.slf4j.Slf4j;
@@ -19,17 +18,22 @@ import org.springframework.stereotype.Service;
 public class MessageExtractorServiceImpl implements MessageExtractorService {
 
     private final ScanLogRepository scanLogRepository;
-    private final MailboxRepository mailboxRepository;
+    private final MailboxCache mailboxCache;
     private final PhishingScannerService phishingScannerService;
     private final WebSocketNotificationService notificationService;
+    private final ProcessedMessageLedger processedMessageLedger;
+    private final UrlCanonicalizer urlCanonicalizer;
 
     @Autowired
-    public MessageExtractorServiceImpl(ScanLogRepository scanLogRepository, MailboxRepository mailboxRepository,
-                                       PhishingScannerService phishingScannerService, WebSocketNotificationService notificationService) {
+    public MessageExtractorServiceImpl(ScanLogRepository scanLogRepository, MailboxCache mailboxCache,
+                                       PhishingScannerService phishingScannerService, WebSocketNotificationService notificationService,
+                                       ProcessedMessageLedger processedMessageLedger, UrlCanonicalizer urlCanonicalizer) {
         this.scanLogRepository = scanLogRepository;
-        this.mailboxRepository = mailboxRepository;
+        this.mailboxCache = mailboxCache;
         this.phishingScannerService = phishingScannerService;
         this.notificationService = notificationService;
+        this.processedMessageLedger = processedMessageLedger;
+        this.urlCanonicalizer = urlCanonicalizer;
     }
 
     @Override
@@ -45,6 +49,8 @@ public class MessageExtractorServiceImpl implements MessageExtractorService {
             PhishingScanResult scanResult = phishingScannerService.scanEmail(extractSender(emailContent), emailContent.subject(), cleanHtml, urls);
 
             processScanResults(scanLog, scanResult);
+            // only a stored result counts as processed; a scan cut short is picked up again after a restart
+            processedMessageLedger.record(scanLog.getMailbox().getId(), emailContent.messageId(), scanLog.getId());
 
             log.info("Scan completed for email from: {} subject: {}", scanLog.getSender(), scanLog.getSubject());
         } catch (Exception e) {
@@ -70,8 +76,9 @@ public class MessageExtractorServiceImpl implements MessageExtractorService {
             links.add(element.attr("href"));
         });
 
-        log.info("Extracted URLs: {}", links);
-        return links;
+        List<String> urls = urlCanonicalizer.canonicalize(links);
+        log.info("Extracted URLs: {}", urls);
+        return urls;
     }
 
     private ScanLog createScanLog(EmailContent emailContent) {
@@ -83,7 +90,7 @@ public class MessageExtractorServiceImpl implements MessageExtractorService {
             scanLog.setSubject(emailContent.subject());
         }
         scanLog.setScanDate(new Date());
-        scanLog.setMailbox(mailboxRepository.findByEmailAndUserId(emailContent.username(), emailContent.currentUserId())
+        scanLog.setMailbox(mailboxCache.findByEmailAndUserId(emailContent.username(), emailContent.currentUserId())
                 .orElseThrow(() -> new RuntimeException("Mailbox not found: " + emailContent.username())));
         scanLog.setThreatLevel("Pending");
         scanLog.setComment("URL scan in progress");
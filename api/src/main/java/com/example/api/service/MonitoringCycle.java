@@ -0,0 +1,10 @@
+package com.example.api.service;
+
+@FunctionalInterface
+public interface MonitoringCycle {
+
+    /**
+     * @return milliseconds to wait before the next run, or a negative value to stop
+     */
+    long run();
+}
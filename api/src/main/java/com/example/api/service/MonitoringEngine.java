@@ -0,0 +1,17 @@
+package com.example.api.service;
+
+public interface MonitoringEngine {
+
+    /**
+     * Runs the cycle after the initial delay and then again after whatever delay each run returns,
+     * until a run returns a negative delay or the task is cancelled.
+     */
+    MonitoringTask schedule(String name, MonitoringCycle cycle, long initialDelay);
+
+    /**
+     * Runs a long-lived blocking session, such as an IMAP IDLE loop, until it returns or is cancelled.
+     */
+    MonitoringTask runSession(String name, Runnable session);
+
+    void shutdown();
+}
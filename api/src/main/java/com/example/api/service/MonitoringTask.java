@@ -0,0 +1,8 @@
+package com.example.api.service;
+
+public interface MonitoringTask {
+
+    boolean isActive();
+
+    void cancel();
+}
@@ -0,0 +1,45 @@
+package com.example.api.service;
+
+import java.util.List;
+import com.example.api.dto.EmailConfigRequest;
+import com.example.api.model.Mailbox;
+import com.example.api.repository.MailboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resumes monitoring of every mailbox that was monitored before the application stopped,
+ * instead of waiting for each user to reopen the UI. Connections are spread out by {@link ReconnectRamp}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "monitoring.restart.enabled", havingValue = "true", matchIfMissing = true)
+public class MonitoringWarmRestart {
+
+    private final MailboxRepository mailboxRepository;
+    private final MailboxConnectionService mailboxConnectionService;
+    private final MailboxLeaseService leaseService;
+
+    public MonitoringWarmRestart(MailboxRepository mailboxRepository, MailboxConnectionService mailboxConnectionService,
+                                 MailboxLeaseService leaseService) {
+        this.mailboxRepository = mailboxRepository;
+        this.mailboxConnectionService = mailboxConnectionService;
+        this.leaseService = leaseService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeMonitoring() {
+        if (leaseService.isEnabled()) {
+            // the lease heartbeat claims this node's share and resumes it through the same ramp
+            log.info("Cluster mode enabled, leaving mailbox resumption to the lease heartbeat");
+            return;
+        }
+
+        List<Mailbox> mailboxes = mailboxRepository.findByMonitoredTrue();
+        mailboxes.forEach(mailbox -> mailboxConnectionService.resumeMonitoring(EmailConfigRequest.fromMailbox(mailbox)));
+        log.info("Resuming monitoring of {} mailboxes", mailboxes.size());
+    }
+}
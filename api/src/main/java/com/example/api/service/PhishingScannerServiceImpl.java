@@ -1,7 +1,5 @@
 package com.example.api.service;
 
-import com.example.api.exception.AiModelException;
-import com.example.api.exception.SafeBrowsingApiException;
 import com.example.api.exception.UrlScanApiException;
 import com.nimbusds.jose.shaded.gson.*;
 import com.nimbusds.jose.shaded.gson.stream.JsonReader;
@@ -16,25 +14,42 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
 public class PhishingScannerServiceImpl implements PhishingScannerService {
     private static final String URLSCAN_SUBMIT_URL = "https://urlscan.io/api/v1/scan/";
-    private static final String SAFE_BROWSE_API_URL = "https://safebrowsing.googleapis.com/v4/threatMatches:find";
-    //private static final String URLSCAN_API_URL = "http://ai:8000/analyze-email";
-    private static final String URLSCAN_API_URL = "http://localhost:8000/analyze-email";
-
-    @Value("${google.safebrowsing.api.key}")
-    private String apiKey;
 
     @Value("${urlscan.io.api.key}")
     private String urlscanApiKey;
 
-    private final HttpClient httpClient;
+    @Value("${scan.checks.max-concurrent:4}")
+    private int maxConcurrentChecks;
 
-    public PhishingScannerServiceImpl() {
+    @Value("${scan.checks.deadline:90000}")
+    private long checksDeadline;
+
+    private final HttpClient httpClient;
+    private final SafeBrowsingBatcher safeBrowsingBatcher;
+    private final UrlScanPoller urlScanPoller;
+    private final UrlVerdictCache urlVerdictCache;
+    private final SafeBrowsingLocalDatabase safeBrowsingDatabase;
+    private final DomainReputation domainReputation;
+    private final AiModelBatcher aiModelBatcher;
+
+    public PhishingScannerServiceImpl(SafeBrowsingBatcher safeBrowsingBatcher, UrlScanPoller urlScanPoller,
+                                      UrlVerdictCache urlVerdictCache, SafeBrowsingLocalDatabase safeBrowsingDatabase,
+                                      DomainReputation domainReputation, AiModelBatcher aiModelBatcher) {
         this.httpClient = HttpClient.newHttpClient();
+        this.safeBrowsingBatcher = safeBrowsingBatcher;
+        this.urlScanPoller = urlScanPoller;
+        this.urlVerdictCache = urlVerdictCache;
+        this.safeBrowsingDatabase = safeBrowsingDatabase;
+        this.domainReputation = domainReputation;
+        this.aiModelBatcher = aiModelBatcher;
     }
 
     @Override
@@ -43,13 +58,35 @@ public class PhishingScannerServiceImpl implements PhishingScannerService {
         List<String> threats = new ArrayList<>();
         int riskScore = 0;
 
-        try {
-            float probability;
-            if (subject == null || subject.isEmpty()) {
-                probability = checkEmailContent(content);
-            } else {
-                probability = checkEmailContent(subject + " " + content);
+        // the checks run concurrently, so a scan takes about as long as its slowest check rather than their sum
+        CompletableFuture<Float> contentCheck = checkEmailContent(
+                subject == null || subject.isEmpty() ? content : subject + " " + content);
+        // links to trusted or known-bad domains are decided without any remote check
+        List<DomainReputation.Verdict> reputations = urls.stream().map(domainReputation::classify).toList();
+        List<String> remoteUrls = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            if (reputations.get(i) == DomainReputation.Verdict.UNKNOWN) {
+                remoteUrls.add(urls.get(i));
             }
+        }
+
+        // Safe Browsing lookups are batched across scans, so they are not counted against the cap
+        List<CompletableFuture<Boolean>> safeBrowsingResults = remoteUrls.stream()
+                .map(this::checkUrlWithSafeBrowsing)
+                .toList();
+        List<Supplier<CompletableFuture<Boolean>>> urlScanChecks = new ArrayList<>();
+        for (String url : remoteUrls) {
+            urlScanChecks.add(() -> checkUrlWithUrlScan(url));
+        }
+        List<CompletableFuture<Boolean>> urlScanResults = runBounded(urlScanChecks, maxConcurrentChecks);
+
+        List<CompletableFuture<?>> allChecks = new ArrayList<>(safeBrowsingResults);
+        allChecks.addAll(urlScanResults);
+        allChecks.add(contentCheck);
+        awaitDeadline(allChecks);
+
+        try {
+            float probability = contentCheck.join();
 
             if (probability > 0.9) {
                 threats.add("Very high probability of phishing or spam content");
@@ -66,30 +103,39 @@ public class PhishingScannerServiceImpl implements PhishingScannerService {
             } else if (probability == -1) {
                 threats.add("AI model check failed");
             }
-        } catch (AiModelException e) {
-            log.error("AI model check failed", e);
+        } catch (CompletionException | CancellationException e) {
+            log.error("AI model check failed", e.getCause() != null ? e.getCause() : e);
             threats.add("AI content analysis failed");
         }
 
-        for (String url : urls) {
-            try {
-                if (checkUrlWithSafeBrowsing(url)) {
-                    threats.add("URL flagged by Google Safe Browsing: " + url);
-                    riskScore += 30;
-                }
-            } catch (SafeBrowsingApiException e) {
-                log.error("Safe Browsing API check failed for URL: {}", url, e);
+        int remote = 0;
+        for (int i = 0; i < urls.size(); i++) {
+            String url = urls.get(i);
+            if (reputations.get(i) == DomainReputation.Verdict.BLOCKED) {
+                threats.add("URL on a blocked domain: " + url);
+                riskScore += 30;
+            }
+            if (reputations.get(i) != DomainReputation.Verdict.UNKNOWN) {
+                continue;
+            }
+            CompletableFuture<Boolean> safeBrowsing = safeBrowsingResults.get(remote);
+            CompletableFuture<Boolean> urlScan = urlScanResults.get(remote);
+            remote++;
+
+            if (isFailed(safeBrowsing)) {
+                log.error("Safe Browsing API check failed for URL: {}", url, failureOf(safeBrowsing));
                 threats.add("Safe Browsing check failed for URL: " + url);
+            } else if (safeBrowsing.join()) {
+                threats.add("URL flagged by Google Safe Browsing: " + url);
+                riskScore += 30;
             }
 
-            try {
-                if (checkUrlWithUrlScan(url)) {
-                    threats.add("URL flagged by URLScan.io: " + url);
-                    riskScore += 30;
-                }
-            } catch (UrlScanApiException e) {
-                log.error("URLScan.io check failed for URL: {}", url, e);
+            if (isFailed(urlScan)) {
+                log.error("URLScan.io check failed for URL: {}", url, failureOf(urlScan));
                 threats.add("URLScan check failed for URL: " + url);
+            } else if (urlScan.join()) {
+                threats.add("URL flagged by URLScan.io: " + url);
+                riskScore += 30;
             }
         }
 
@@ -97,130 +143,144 @@ public class PhishingScannerServiceImpl implements PhishingScannerService {
         return new PhishingScanResult(riskScore, riskLevel, threats);
     }
 
-    private boolean checkUrlWithSafeBrowsing(String url) {
-        try {
-            log.info("Checking URL with Google Safe Browsing API: {}", url);
-            String requestBody = """
-            {
-                "client": {
-                    "clientId": "ProtEmail",
-                    "clientVersion": "1.0.0"
-                },
-                "threatInfo": {
-                    "threatTypes": ["MALWARE", "SOCIAL_ENGINEERING", "UNWANTED_SOFTWARE", "POTENTIALLY_HARMFUL_APPLICATION"],
-                    "platformTypes": ["ANY_PLATFORM"],
-                    "threatEntryTypes": ["URL"],
-                    "threatEntries": [
-                        {"url": "%s"}
-                    ]
+    /**
+     * Starts the checks with at most {@code maxConcurrent} of them in flight, the next one starting as
+     * soon as a running one completes. The returned futures are in the order of {@code checks}; cancelling
+     * one that has not started yet keeps it from starting.
+     */
+    private <T> List<CompletableFuture<T>> runBounded(List<Supplier<CompletableFuture<T>>> checks, int maxConcurrent) {
+        List<CompletableFuture<T>> results = new ArrayList<>();
+        checks.forEach(check -> results.add(new CompletableFuture<>()));
+        AtomicInteger next = new AtomicInteger();
+
+        Runnable startNext = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                while ((index = next.getAndIncrement()) < checks.size()) {
+                    CompletableFuture<T> result = results.get(index);
+                    if (result.isDone()) {
+                        continue;
+                    }
+                    CompletableFuture<T> running;
+                    try {
+                        running = checks.get(index).get();
+                    } catch (RuntimeException e) {
+                        running = CompletableFuture.failedFuture(e);
+                    }
+                    CompletableFuture<T> started = running;
+                    result.whenComplete((value, error) -> started.cancel(true));
+                    started.whenComplete((value, error) -> {
+                        if (error != null) {
+                            result.completeExceptionally(error);
+                        } else {
+                            result.complete(value);
+                        }
+                        run();
+                    });
+                    return;
                 }
             }
-            """.formatted(url);
-
-            String fullUrl = SAFE_BROWSE_API_URL + "?key=" + apiKey;
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(fullUrl))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .build();
-
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() != 200) {
-                throw new SafeBrowsingApiException("Safe Browsing API request failed with status: " + response.statusCode());
-            }
-
-            boolean hasMatches = response.body().contains("matches");
-            log.info("URL {} is {}", url, hasMatches ? "unsafe" : "safe");
-            return hasMatches;
-        } catch (Exception e) {
-            throw new SafeBrowsingApiException("Safe Browsing API error for URL: " + url, e);
+        };
+        for (int i = 0; i < Math.min(maxConcurrent, checks.size()); i++) {
+            startNext.run();
         }
+        return results;
     }
 
-    private boolean checkUrlWithUrlScan(String url) {
+    private void awaitDeadline(List<CompletableFuture<?>> checks) {
         try {
-            log.info("Checking URL with URLScan.io: {}", url);
-
-            String fullUrl = url.startsWith("http") ? url : "https://" + url;
-
-            String submitRequestBody = """
-            {
-                "url": "%s",
-                "visibility": "private"
-            }
-            """.formatted(fullUrl);
-
-            HttpRequest submitRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(URLSCAN_SUBMIT_URL))
-                    .header("Content-Type", "application/json")
-                    .header("API-Key", urlscanApiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(submitRequestBody))
-                    .build();
-
-            HttpResponse<String> submitResponse = httpClient.send(submitRequest, HttpResponse.BodyHandlers.ofString());
-
-            if (submitResponse.statusCode() != 200) {
-                throw new UrlScanApiException("URLScan.io submission failed with status: " + submitResponse.statusCode());
-            }
-
-            JsonObject submitJsonResponse = parseJsonResponse(submitResponse.body());
-            String resultUrl = submitJsonResponse.get("api").getAsString();
-
-            Thread.sleep(11000);
+            CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new)).get(checksDeadline, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Checks did not finish within {} ms, reporting the unfinished ones as failed", checksDeadline);
+            checks.forEach(check -> check.cancel(true));
+        } catch (ExecutionException e) {
+            // failures are reported per check by the caller
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            checks.forEach(check -> check.cancel(true));
+        }
+    }
 
-            HttpRequest resultRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(resultUrl))
-                    .header("API-Key", urlscanApiKey)
-                    .GET()
-                    .build();
+    private static boolean isFailed(CompletableFuture<?> check) {
+        return !check.isDone() || check.isCompletedExceptionally();
+    }
 
-            HttpResponse<String> resultResponse = httpClient.send(resultRequest, HttpResponse.BodyHandlers.ofString());
+    private static Throwable failureOf(CompletableFuture<?> check) {
+        try {
+            check.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        } catch (CancellationException e) {
+            return e;
+        }
+    }
 
-            if (resultResponse.statusCode() != 200) {
-                throw new UrlScanApiException("URLScan.io result fetch failed with status: " + resultResponse.statusCode());
-            }
+    private CompletableFuture<Boolean> checkUrlWithSafeBrowsing(String url) {
+        log.info("Checking URL with Google Safe Browsing API: {}", url);
+        // the local lists answer faster than the verdict cache could
+        CompletableFuture<Boolean> verdict = safeBrowsingDatabase.isReady()
+                ? safeBrowsingDatabase.lookup(url)
+                : urlVerdictCache.get("safe-browsing", url, () -> safeBrowsingBatcher.lookup(url));
+        return verdict
+                .thenApply(hasMatches -> {
+                    log.info("URL {} is {}", url, hasMatches ? "unsafe" : "safe");
+                    return hasMatches;
+                });
+    }
 
-            JsonObject jsonResponse = parseJsonResponse(resultResponse.body());
-            JsonObject verdicts = jsonResponse.getAsJsonObject("verdicts").getAsJsonObject("urlscan");
-            if (verdicts.has("categories") && !verdicts.getAsJsonArray("categories").isEmpty()) {
-                log.info("URL {} has threat categories: {}", url, verdicts.getAsJsonArray("categories"));
-                return true;
-            }
+    private CompletableFuture<Boolean> checkUrlWithUrlScan(String url) {
+        log.info("Checking URL with URLScan.io: {}", url);
+        return urlVerdictCache.get("urlscan", url, () -> submitToUrlScan(url));
+    }
 
-            log.info("No threats detected for URL: {}", url);
-            return false;
+    private CompletableFuture<Boolean> submitToUrlScan(String url) {
+        String fullUrl = url.startsWith("http") ? url : "https://" + url;
 
-        } catch (Exception e) {
-            log.error("Error in URLScan.io check for URL {}: {}", url, e.getMessage());
-            throw new UrlScanApiException("URLScan.io API error for URL: " + url, e);
+        String submitRequestBody = """
+        {
+            "url": "%s",
+            "visibility": "private"
         }
+        """.formatted(fullUrl);
+
+        HttpRequest submitRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URLSCAN_SUBMIT_URL))
+                .header("Content-Type", "application/json")
+                .header("API-Key", urlscanApiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(submitRequestBody))
+                .build();
+
+        return httpClient.sendAsync(submitRequest, HttpResponse.BodyHandlers.ofString())
+                .thenApply(submitResponse -> {
+                    if (submitResponse.statusCode() != 200) {
+                        throw new UrlScanApiException("URLScan.io submission failed with status: " + submitResponse.statusCode());
+                    }
+                    return parseJsonResponse(submitResponse.body()).get("uuid").getAsString();
+                })
+                .thenCompose(urlScanPoller::await)
+                .thenApply(hasThreats -> {
+                    if (hasThreats) {
+                        log.info("URL {} has threat categories", url);
+                    } else {
+                        log.info("No threats detected for URL: {}", url);
+                    }
+                    return hasThreats;
+                })
+                .exceptionally(e -> {
+                    log.error("Error in URLScan.io check for URL {}: {}", url, unwrap(e).getMessage());
+                    throw new UrlScanApiException("URLScan.io API error for URL: " + url, unwrap(e));
+                });
     }
 
-    private float checkEmailContent(String content) {
-        try {
-            log.info("Checking email content with AI model");
-            String requestBody = String.format("{\"email_text\": \"%s\"}", content);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(URLSCAN_API_URL))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() != 200) {
-                return -1;
-            }
+    private CompletableFuture<Float> checkEmailContent(String content) {
+        log.info("Checking email content with AI model");
+        return aiModelBatcher.analyze(content);
+    }
 
-            JsonObject jsonResponse = JsonParser.parseString(response.body()).getAsJsonObject();
-            return jsonResponse.get("probability").getAsFloat();
-        } catch (Exception e) {
-            throw new AiModelException("AI model analysis error", e);
-        }
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 
     private JsonObject parseJsonResponse(String response) {
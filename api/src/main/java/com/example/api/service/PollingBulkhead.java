@@ -0,0 +1,40 @@
+package com.example.api.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caps how many polling cycles may run against one IMAP host at the same time, so that a host that
+ * hangs until the socket timeout can only tie up its own share of the monitoring engine's threads.
+ * Cycles that don't get in are not queued; the caller reschedules them after {@link #getRetryDelay()}.
+ */
+@Component
+public class PollingBulkhead {
+
+    private final int maxConcurrentPerHost;
+    private final long retryDelay;
+    private final ConcurrentHashMap<String, Semaphore> hostSlots = new ConcurrentHashMap<>();
+
+    public PollingBulkhead(@Value("${monitoring.bulkhead.max-concurrent-per-host:4}") int maxConcurrentPerHost,
+                           @Value("${monitoring.bulkhead.retry-delay:2000}") long retryDelay) {
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        this.retryDelay = retryDelay;
+    }
+
+    public boolean tryEnter(String host) {
+        return hostSlots.computeIfAbsent(host, key -> new Semaphore(maxConcurrentPerHost)).tryAcquire();
+    }
+
+    public void exit(String host) {
+        Semaphore slots = hostSlots.get(host);
+        if (slots != null) {
+            slots.release();
+        }
+    }
+
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+}
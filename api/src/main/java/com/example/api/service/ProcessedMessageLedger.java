@@ -0,0 +1,135 @@
+package com.example.api.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import com.example.api.repository.ProcessedMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Persistent record of which messages were scanned, so that a restart or a mailbox moving to another
+ * node does not scan (and bill the external APIs for) the same message twice. Entries are keyed by
+ * mailbox id and the 64-bit hash of the message identity, buffered in memory and inserted in JDBC batches.
+ * The pair is unique in the table; an entry another node already wrote is skipped rather than failing the batch.
+ * Lookups only reach the database for messages the in-memory {@link MessageDedupFilter} has not seen.
+ */
+@Slf4j
+@Component
+public class ProcessedMessageLedger {
+
+    private static final String INSERT_SQL =
+            "insert into processed_messages (mailbox_id, message_hash, scan_log_id, processed_at) values (?, ?, ?, ?)";
+
+    private record LedgerEntry(Long mailboxId, long messageHash, Long scanLogId, Date processedAt) { }
+
+    private final ProcessedMessageRepository processedMessageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final long retention;
+    private final ConcurrentLinkedQueue<LedgerEntry> pending = new ConcurrentLinkedQueue<>();
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    public ProcessedMessageLedger(ProcessedMessageRepository processedMessageRepository, JdbcTemplate jdbcTemplate,
+                                  @Value("${monitoring.ledger.batch-size:200}") int batchSize,
+                                  @Value("${monitoring.ledger.retention:7776000000}") long retention) {
+        this.processedMessageRepository = processedMessageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.retention = retention;
+    }
+
+    public boolean contains(Long mailboxId, String messageIdentity) {
+        long hash = MessageDedupFilter.hash(messageIdentity);
+        return pendingKeys.contains(key(mailboxId, hash))
+                || processedMessageRepository.existsByMailboxIdAndMessageHash(mailboxId, hash);
+    }
+
+    public void record(Long mailboxId, String messageIdentity, Long scanLogId) {
+        long hash = MessageDedupFilter.hash(messageIdentity);
+        pendingKeys.add(key(mailboxId, hash));
+        pending.add(new LedgerEntry(mailboxId, hash, scanLogId, new Date()));
+        if (pendingKeys.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.ledger.flush-interval:5000}")
+    public synchronized void flush() {
+        List<LedgerEntry> batch = new ArrayList<>();
+        Set<String> batchKeys = new HashSet<>();
+        LedgerEntry entry;
+        while ((entry = pending.poll()) != null) {
+            if (batchKeys.add(key(entry.mailboxId(), entry.messageHash()))) {
+                batch.add(entry);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            try {
+                insertBatch(batch);
+            } catch (DuplicateKeyException e) {
+                // some entries were already written, e.g. by another node; insert the rest one at a time
+                insertEach(batch);
+            }
+            log.debug("Recorded {} processed messages", batch.size());
+        } catch (Exception e) {
+            log.error("Failed to record {} processed messages, retrying on next flush: {}", batch.size(), e.getMessage());
+            pending.addAll(batch);
+            return;
+        }
+        batch.forEach(written -> pendingKeys.remove(key(written.mailboxId(), written.messageHash())));
+    }
+
+    private void insertBatch(List<LedgerEntry> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batchSize, (statement, ledgerEntry) -> {
+            statement.setLong(1, ledgerEntry.mailboxId());
+            statement.setLong(2, ledgerEntry.messageHash());
+            statement.setObject(3, ledgerEntry.scanLogId());
+            statement.setTimestamp(4, new Timestamp(ledgerEntry.processedAt().getTime()));
+        });
+    }
+
+    private void insertEach(List<LedgerEntry> batch) {
+        int skipped = 0;
+        for (LedgerEntry ledgerEntry : batch) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, ledgerEntry.mailboxId(), ledgerEntry.messageHash(),
+                        ledgerEntry.scanLogId(), new Timestamp(ledgerEntry.processedAt().getTime()));
+            } catch (DuplicateKeyException e) {
+                skipped++;
+            }
+        }
+        log.debug("Skipped {} processed messages that were already recorded", skipped);
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.ledger.purge-interval:3600000}")
+    public void purge() {
+        int purged = processedMessageRepository.deleteProcessedBefore(new Date(System.currentTimeMillis() - retention));
+        if (purged > 0) {
+            log.info("Purged {} processed-message entries older than the retention period", purged);
+        }
+    }
+
+    private static String key(Long mailboxId, long hash) {
+        return mailboxId + ":" + hash;
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+}
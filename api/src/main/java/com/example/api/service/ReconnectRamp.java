@@ -0,0 +1,34 @@
+package com.example.api.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out start slots for mailboxes that are (re)started without a user waiting on them, spaced by the
+ * {@link ImapHostLimiter}'s connect rate. The limiter would space those connections anyway, but by putting a
+ * monitoring thread to sleep for each one; starting the mailboxes at their slot means that after a restart or
+ * a lease takeover the threads are not all parked on the same host at once.
+ */
+@Component
+public class ReconnectRamp {
+
+    private final long spacing;
+    private final ConcurrentHashMap<String, Long> nextFreeSlots = new ConcurrentHashMap<>();
+
+    public ReconnectRamp(ImapHostLimiter hostLimiter) {
+        this.spacing = hostLimiter.getConnectSpacing();
+    }
+
+    /**
+     * Reserves the next start slot for the host and returns the delay until it, in milliseconds.
+     */
+    public long reserve(String host) {
+        long now = System.currentTimeMillis();
+        long[] slot = new long[1];
+        nextFreeSlots.compute(host, (key, nextFree) -> {
+            slot[0] = nextFree == null ? now : Math.max(nextFree, now);
+            return slot[0] + spacing;
+        });
+        return slot[0] - now;
+    }
+}
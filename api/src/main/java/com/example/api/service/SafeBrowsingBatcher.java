@@ -0,0 +1,184 @@
+package com.example.api.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.example.api.exception.SafeBrowsingApiException;
+import com.nimbusds.jose.shaded.gson.JsonArray;
+import com.nimbusds.jose.shaded.gson.JsonElement;
+import com.nimbusds.jose.shaded.gson.JsonObject;
+import com.nimbusds.jose.shaded.gson.JsonParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Looks URLs up in Google Safe Browsing in batches shared by all scans in flight.
+ * The first lookup after a quiet period opens a window of {@code batch-window} ms; every URL asked for
+ * until the window closes, or until {@code batch-size} distinct URLs are waiting, goes out in a single
+ * {@code threatMatches:find} request, and each caller's future completes from that one response.
+ */
+@Slf4j
+@Component
+public class SafeBrowsingBatcher {
+
+    // threatMatches:find accepts at most 500 threat entries per request
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "safe-browsing-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String apiUrl;
+    private final String apiKey;
+    private final long batchWindow;
+    private final int batchSize;
+
+    // URL -> callers waiting for it, in arrival order
+    private Map<String, List<CompletableFuture<Boolean>>> pending = new LinkedHashMap<>();
+
+    private final Counter requests;
+    private final DistributionSummary batchSizes;
+
+    public SafeBrowsingBatcher(@Value("${scan.safe-browsing.api-url:https://safebrowsing.googleapis.com/v4/threatMatches:find}") String apiUrl,
+                               @Value("${google.safebrowsing.api.key}") String apiKey,
+                               @Value("${scan.safe-browsing.batch-window:50}") long batchWindow,
+                               @Value("${scan.safe-browsing.batch-size:500}") int batchSize,
+                               MeterRegistry meterRegistry) {
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.batchWindow = batchWindow;
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+
+        this.requests = Counter.builder("safebrowsing.requests").description("threatMatches:find requests sent").register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("safebrowsing.batch.size").description("Distinct URLs per request").register(meterRegistry);
+    }
+
+    /**
+     * Completes with true when Safe Browsing lists the URL, or exceptionally with a {@link SafeBrowsingApiException}
+     * when the batch it went out in failed.
+     */
+    public CompletableFuture<Boolean> lookup(String url) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Map<String, List<CompletableFuture<Boolean>>> full = null;
+        synchronized (this) {
+            boolean opensWindow = pending.isEmpty();
+            pending.computeIfAbsent(url, key -> new ArrayList<>()).add(result);
+            if (pending.size() >= batchSize) {
+                full = takePending();
+            } else if (opensWindow) {
+                Map<String, List<CompletableFuture<Boolean>>> window = pending;
+                timer.schedule(() -> flushWindow(window), batchWindow, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return result;
+    }
+
+    private void flushWindow(Map<String, List<CompletableFuture<Boolean>>> window) {
+        Map<String, List<CompletableFuture<Boolean>>> batch;
+        synchronized (this) {
+            // the window's batch may already have gone out because it filled up
+            if (pending != window || pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        send(batch);
+    }
+
+    private Map<String, List<CompletableFuture<Boolean>>> takePending() {
+        Map<String, List<CompletableFuture<Boolean>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+
+    private void send(Map<String, List<CompletableFuture<Boolean>>> batch) {
+        requests.increment();
+        batchSizes.record(batch.size());
+        log.debug("Checking {} URLs with Google Safe Browsing API", batch.size());
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(apiUrl + "?key=" + apiKey))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody(batch.keySet()).toString()))
+                .build();
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new SafeBrowsingApiException("Safe Browsing API request failed with status: " + response.statusCode());
+                    }
+                    return matchedUrls(response.body());
+                })
+                .whenComplete((matched, error) -> batch.forEach((url, callers) -> callers.forEach(caller -> {
+                    if (error != null) {
+                        caller.completeExceptionally(new SafeBrowsingApiException("Safe Browsing API error for URL: " + url,
+                                error.getCause() != null ? error.getCause() : error));
+                    } else {
+                        caller.complete(matched.contains(url));
+                    }
+                })));
+    }
+
+    private static JsonObject requestBody(Set<String> urls) {
+        JsonObject client = new JsonObject();
+        client.addProperty("clientId", "ProtEmail");
+        client.addProperty("clientVersion", "1.0.0");
+
+        JsonArray entries = new JsonArray();
+        for (String url : urls) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("url", url);
+            entries.add(entry);
+        }
+
+        JsonObject threatInfo = new JsonObject();
+        threatInfo.add("threatTypes", stringArray("MALWARE", "SOCIAL_ENGINEERING", "UNWANTED_SOFTWARE", "POTENTIALLY_HARMFUL_APPLICATION"));
+        threatInfo.add("platformTypes", stringArray("ANY_PLATFORM"));
+        threatInfo.add("threatEntryTypes", stringArray("URL"));
+        threatInfo.add("threatEntries", entries);
+
+        JsonObject body = new JsonObject();
+        body.add("client", client);
+        body.add("threatInfo", threatInfo);
+        return body;
+    }
+
+    private static JsonArray stringArray(String... values) {
+        JsonArray array = new JsonArray();
+        Arrays.stream(values).forEach(array::add);
+        return array;
+    }
+
+    private static Set<String> matchedUrls(String body) {
+        Set<String> matched = new HashSet<>();
+        JsonObject response = JsonParser.parseString(body).getAsJsonObject();
+        if (response.has("matches")) {
+            // matches echo the threat entry exactly as it was sent
+            for (JsonElement match : response.getAsJsonArray("matches")) {
+                matched.add(match.getAsJsonObject().getAsJsonObject("threat").get("url").getAsString());
+            }
+        }
+        return matched;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,535 @@
+package com.example.api.service;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.example.api.exception.SafeBrowsingApiException;
+import com.nimbusds.jose.shaded.gson.JsonArray;
+import com.nimbusds.jose.shaded.gson.JsonElement;
+import com.nimbusds.jose.shaded.gson.JsonObject;
+import com.nimbusds.jose.shaded.gson.JsonParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Local copy of the Safe Browsing threat lists, kept in sync through the v4 Update API.
+ * Lists are fetched as SHA-256 hash prefixes and held in {@link HashPrefixList}s; a URL is checked by hashing
+ * its host-suffix/path-prefix expressions and searching the prefixes in memory. Only when a prefix matches is
+ * {@code fullHashes:find} asked for the full hashes behind it, and its answers are cached for the durations
+ * the API returns. Lookups of clean URLs therefore never leave the JVM.
+ * <p>
+ * Reads go to an immutable snapshot of the lists that each update replaces, so they take no locks.
+ */
+@Slf4j
+@Component
+public class SafeBrowsingLocalDatabase {
+
+    private static final List<String> THREAT_TYPES =
+            List.of("MALWARE", "SOCIAL_ENGINEERING", "UNWANTED_SOFTWARE", "POTENTIALLY_HARMFUL_APPLICATION");
+    private static final String PLATFORM_TYPE = "ANY_PLATFORM";
+    private static final String THREAT_ENTRY_TYPE = "URL";
+    private static final long MAX_BACKOFF = 24 * 60 * 60 * 1000L;
+
+    private record ThreatList(String threatType, String clientState, HashPrefixList prefixes) { }
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    // list downloads block for up to a minute, so they run here rather than on the shared scheduler thread
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "safe-browsing-update");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean updateQueued = new AtomicBoolean();
+    private final String apiUrl;
+    private final String apiKey;
+    private final boolean enabled;
+    private final long updateInterval;
+
+    private volatile Map<String, ThreatList> lists = Map.of();
+    private volatile boolean ready;
+    private long nextUpdateAt;
+    private int failedUpdates;
+
+    // full hashes known to be listed, and prefixes known to have no listed full hash, until the given time
+    private final ConcurrentHashMap<ByteBuffer, Long> listedHashes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ByteBuffer, Long> clearedPrefixes = new ConcurrentHashMap<>();
+
+    private final Counter localLookups;
+    private final Counter fullHashRequests;
+
+    public SafeBrowsingLocalDatabase(@Value("${scan.safe-browsing.local.api-url:https://safebrowsing.googleapis.com/v4}") String apiUrl,
+                                     @Value("${google.safebrowsing.api.key}") String apiKey,
+                                     @Value("${scan.safe-browsing.local.enabled:false}") boolean enabled,
+                                     @Value("${scan.safe-browsing.local.update-interval:1800000}") long updateInterval,
+                                     MeterRegistry meterRegistry) {
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.enabled = enabled;
+        this.updateInterval = updateInterval;
+
+        this.localLookups = Counter.builder("safebrowsing.local.lookups").description("URLs decided from the local lists").register(meterRegistry);
+        this.fullHashRequests = Counter.builder("safebrowsing.local.fullhash.requests").description("fullHashes:find requests after a prefix hit").register(meterRegistry);
+        Gauge.builder("safebrowsing.local.prefixes", this, SafeBrowsingLocalDatabase::size).register(meterRegistry);
+    }
+
+    /**
+     * True once every list has been synced, so that lookups can be answered locally.
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    public int size() {
+        return lists.values().stream().mapToInt(list -> list.prefixes().size()).sum();
+    }
+
+    /**
+     * Completes with true when the URL is on one of the threat lists. Completes immediately unless one of
+     * the URL's expressions matches a hash prefix that has not been resolved yet.
+     */
+    public CompletableFuture<Boolean> lookup(String url) {
+        long now = System.currentTimeMillis();
+        List<byte[]> hashes = expressionHashes(url);
+        for (byte[] hash : hashes) {
+            Long listedUntil = listedHashes.get(ByteBuffer.wrap(hash));
+            if (listedUntil != null && listedUntil > now) {
+                localLookups.increment();
+                return CompletableFuture.completedFuture(true);
+            }
+        }
+
+        Map<String, ThreatList> snapshot = lists;
+        Set<ByteBuffer> unresolved = new LinkedHashSet<>();
+        for (byte[] hash : hashes) {
+            for (ThreatList list : snapshot.values()) {
+                byte[] prefix = list.prefixes().matchingPrefix(hash);
+                if (prefix == null) {
+                    continue;
+                }
+                Long clearedUntil = clearedPrefixes.get(ByteBuffer.wrap(prefix));
+                if (clearedUntil == null || clearedUntil <= now) {
+                    unresolved.add(ByteBuffer.wrap(prefix));
+                }
+            }
+        }
+        if (unresolved.isEmpty()) {
+            localLookups.increment();
+            return CompletableFuture.completedFuture(false);
+        }
+        return findFullHashes(snapshot, unresolved)
+                .thenApply(listed -> hashes.stream().anyMatch(hash -> listed.contains(ByteBuffer.wrap(hash))));
+    }
+
+    @Scheduled(fixedDelayString = "${scan.safe-browsing.local.check-interval:60000}")
+    public void scheduleUpdate() {
+        if (enabled && updateQueued.compareAndSet(false, true)) {
+            updater.execute(() -> {
+                try {
+                    updateIfDue();
+                } finally {
+                    updateQueued.set(false);
+                }
+            });
+        }
+    }
+
+    public synchronized void updateIfDue() {
+        if (!enabled || System.currentTimeMillis() < nextUpdateAt) {
+            return;
+        }
+        try {
+            long wait = update();
+            failedUpdates = 0;
+            nextUpdateAt = System.currentTimeMillis() + wait;
+        } catch (Exception e) {
+            failedUpdates++;
+            long backoff = Math.min(MAX_BACKOFF, updateInterval << Math.min(failedUpdates - 1, 16));
+            nextUpdateAt = System.currentTimeMillis() + backoff;
+            log.error("Safe Browsing list update failed, retrying in {} ms: {}", backoff, e.getMessage());
+        }
+        purgeExpired();
+    }
+
+    /**
+     * Fetches and applies updates for all lists. Returns the wait before the next update, in ms: the regular
+     * interval, or only the server's minimum wait when a list has to be fetched again in full.
+     */
+    private long update() throws Exception {
+        Map<String, ThreatList> current = lists;
+        JsonArray listRequests = new JsonArray();
+        for (String threatType : THREAT_TYPES) {
+            ThreatList list = current.get(threatType);
+            JsonObject constraints = new JsonObject();
+            constraints.add("supportedCompressions", stringArray("RAW"));
+
+            JsonObject listRequest = new JsonObject();
+            listRequest.addProperty("threatType", threatType);
+            listRequest.addProperty("platformType", PLATFORM_TYPE);
+            listRequest.addProperty("threatEntryType", THREAT_ENTRY_TYPE);
+            listRequest.addProperty("state", list == null ? "" : list.clientState());
+            listRequest.add("constraints", constraints);
+            listRequests.add(listRequest);
+        }
+        JsonObject body = new JsonObject();
+        body.add("client", client());
+        body.add("listUpdateRequests", listRequests);
+
+        HttpResponse<String> response = httpClient.send(post("/threatListUpdates:fetch", body), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new SafeBrowsingApiException("Safe Browsing list update failed with status: " + response.statusCode());
+        }
+
+        JsonObject json = JsonParser.parseString(response.body()).getAsJsonObject();
+        Map<String, ThreatList> updated = new HashMap<>(current);
+        boolean missing = false;
+        if (json.has("listUpdateResponses")) {
+            for (JsonElement element : json.getAsJsonArray("listUpdateResponses")) {
+                Optional<ThreatList> list = applyUpdate(current, element.getAsJsonObject());
+                list.ifPresent(applied -> updated.put(applied.threatType(), applied));
+                missing |= list.isEmpty();
+            }
+        }
+        lists = Map.copyOf(updated);
+        ready = !missing && !updated.isEmpty();
+        log.info("Safe Browsing lists updated, {} hash prefixes held locally", size());
+
+        long minimumWait = json.has("minimumWaitDuration") ? parseDuration(json.get("minimumWaitDuration").getAsString()) : 0;
+        boolean resync = !ready || updated.values().stream().anyMatch(list -> list.clientState().isEmpty());
+        return resync ? minimumWait : Math.max(minimumWait, updateInterval);
+    }
+
+    /**
+     * Applies one list's update to its current prefixes. When the result fails the checksum, the previous
+     * prefixes stay in use with an empty client state, which makes the next update a full one; a list that
+     * has never been synced stays missing.
+     */
+    private Optional<ThreatList> applyUpdate(Map<String, ThreatList> current, JsonObject update) {
+        String threatType = update.get("threatType").getAsString();
+        ThreatList previous = current.get(threatType);
+        HashPrefixList base = previous == null || "FULL_UPDATE".equals(stringOrNull(update, "responseType"))
+                ? HashPrefixList.EMPTY
+                : previous.prefixes();
+
+        List<Integer> removed = new ArrayList<>();
+        if (update.has("removals")) {
+            for (JsonElement removal : update.getAsJsonArray("removals")) {
+                JsonObject rawIndices = removal.getAsJsonObject().getAsJsonObject("rawIndices");
+                if (rawIndices != null) {
+                    rawIndices.getAsJsonArray("indices").forEach(index -> removed.add(index.getAsInt()));
+                }
+            }
+        }
+        int[] removals = removed.stream().mapToInt(Integer::intValue).toArray();
+        TreeMap<Integer, byte[]> additions = new TreeMap<>();
+        if (update.has("additions")) {
+            for (JsonElement element : update.getAsJsonArray("additions")) {
+                JsonObject rawHashes = element.getAsJsonObject().getAsJsonObject("rawHashes");
+                int prefixSize = rawHashes.get("prefixSize").getAsInt();
+                byte[] added = Base64.getDecoder().decode(rawHashes.get("rawHashes").getAsString());
+                additions.merge(prefixSize, added, (a, b) -> {
+                    byte[] merged = Arrays.copyOf(a, a.length + b.length);
+                    System.arraycopy(b, 0, merged, a.length, b.length);
+                    return merged;
+                });
+            }
+        }
+
+        HashPrefixList prefixes = base.apply(removals, additions);
+        String expected = update.has("checksum") ? stringOrNull(update.getAsJsonObject("checksum"), "sha256") : null;
+        if (expected != null && !Arrays.equals(Base64.getDecoder().decode(expected), prefixes.checksum())) {
+            log.warn("Checksum mismatch for Safe Browsing list {}, requesting a full update", threatType);
+            return Optional.ofNullable(previous).map(list -> new ThreatList(threatType, "", list.prefixes()));
+        }
+        return Optional.of(new ThreatList(threatType, Objects.requireNonNullElse(stringOrNull(update, "newClientState"), ""), prefixes));
+    }
+
+    private CompletableFuture<Set<ByteBuffer>> findFullHashes(Map<String, ThreatList> snapshot, Set<ByteBuffer> prefixes) {
+        fullHashRequests.increment();
+        JsonArray entries = new JsonArray();
+        for (ByteBuffer prefix : prefixes) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("hash", Base64.getEncoder().encodeToString(prefix.array()));
+            entries.add(entry);
+        }
+        JsonObject threatInfo = new JsonObject();
+        threatInfo.add("threatTypes", stringArray(THREAT_TYPES.toArray(String[]::new)));
+        threatInfo.add("platformTypes", stringArray(PLATFORM_TYPE));
+        threatInfo.add("threatEntryTypes", stringArray(THREAT_ENTRY_TYPE));
+        threatInfo.add("threatEntries", entries);
+
+        JsonObject body = new JsonObject();
+        body.add("client", client());
+        body.add("clientStates", stringArray(snapshot.values().stream().map(ThreatList::clientState).toArray(String[]::new)));
+        body.add("threatInfo", threatInfo);
+
+        return httpClient.sendAsync(post("/fullHashes:find", body), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new SafeBrowsingApiException("Safe Browsing full hash request failed with status: " + response.statusCode());
+                    }
+                    long now = System.currentTimeMillis();
+                    JsonObject json = JsonParser.parseString(response.body()).getAsJsonObject();
+                    Set<ByteBuffer> listed = new HashSet<>();
+                    if (json.has("matches")) {
+                        for (JsonElement element : json.getAsJsonArray("matches")) {
+                            JsonObject match = element.getAsJsonObject();
+                            ByteBuffer hash = ByteBuffer.wrap(Base64.getDecoder().decode(
+                                    match.getAsJsonObject("threat").get("hash").getAsString()));
+                            listed.add(hash);
+                            String cacheDuration = stringOrNull(match, "cacheDuration");
+                            listedHashes.put(hash, now + (cacheDuration == null ? 0 : parseDuration(cacheDuration)));
+                        }
+                    }
+                    String negativeCacheDuration = stringOrNull(json, "negativeCacheDuration");
+                    if (negativeCacheDuration != null) {
+                        // a prefix with a listed full hash must be asked about again once that hash's own cache expires
+                        long clearedUntil = now + parseDuration(negativeCacheDuration);
+                        prefixes.stream()
+                                .filter(prefix -> listed.stream().noneMatch(hash -> startsWith(hash, prefix)))
+                                .forEach(prefix -> clearedPrefixes.put(prefix, clearedUntil));
+                    }
+                    return listed;
+                });
+    }
+
+    private static boolean startsWith(ByteBuffer hash, ByteBuffer prefix) {
+        int length = prefix.array().length;
+        return hash.array().length >= length && Arrays.equals(hash.array(), 0, length, prefix.array(), 0, length);
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        listedHashes.values().removeIf(until -> until <= now);
+        clearedPrefixes.values().removeIf(until -> until <= now);
+    }
+
+    private HttpRequest post(String method, JsonObject body) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(apiUrl + method + "?key=" + apiKey))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    private static JsonObject client() {
+        JsonObject client = new JsonObject();
+        client.addProperty("clientId", "ProtEmail");
+        client.addProperty("clientVersion", "1.0.0");
+        return client;
+    }
+
+    private static JsonArray stringArray(String... values) {
+        JsonArray array = new JsonArray();
+        Arrays.stream(values).forEach(array::add);
+        return array;
+    }
+
+    private static String stringOrNull(JsonObject json, String member) {
+        return json.has(member) && !json.get(member).isJsonNull() ? json.get(member).getAsString() : null;
+    }
+
+    // durations are encoded as decimal seconds with an "s" suffix, e.g. "593.440s"
+    private static long parseDuration(String duration) {
+        return (long) (Double.parseDouble(duration.substring(0, duration.length() - 1)) * 1000);
+    }
+
+    private record CanonicalUrl(String host, String path, String query) { }
+
+    /**
+     * SHA-256 hashes of the host-suffix/path-prefix expressions the Update API looks URLs up by:
+     * the exact host and up to four suffixes formed from its last five labels, combined with the exact path
+     * with and without the query and up to four path prefixes starting at the root.
+     */
+    private static List<byte[]> expressionHashes(String url) {
+        CanonicalUrl canonical = canonicalize(url);
+        String host = canonical.host();
+        String path = canonical.path();
+
+        Set<String> hosts = new LinkedHashSet<>();
+        hosts.add(host);
+        if (!host.matches("[0-9.]+|\\[.*]")) {
+            String[] labels = host.split("\\.");
+            for (int i = Math.max(1, labels.length - 5); i <= labels.length - 2; i++) {
+                hosts.add(String.join(".", Arrays.copyOfRange(labels, i, labels.length)));
+            }
+        }
+
+        Set<String> paths = new LinkedHashSet<>();
+        paths.add(canonical.query() == null ? path : path + "?" + canonical.query());
+        paths.add(path);
+        paths.add("/");
+        String[] segments = path.split("/");
+        StringBuilder prefix = new StringBuilder("/");
+        // segments[0] is the empty string before the leading slash; the last segment is the exact path
+        for (int i = 1; i < segments.length - 1 && i <= 3; i++) {
+            prefix.append(segments[i]).append('/');
+            paths.add(prefix.toString());
+        }
+
+        List<byte[]> hashes = new ArrayList<>();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String hostExpression : hosts) {
+                for (String pathExpression : paths) {
+                    hashes.add(digest.digest((hostExpression + pathExpression).getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        return hashes;
+    }
+
+    /**
+     * Canonicalizes a URL the way the Safe Browsing lists were built: tabs, line breaks and the fragment are
+     * dropped, the URL is percent-unescaped until nothing is left to unescape, the host loses stray dots and
+     * numeric IPv4 hosts are written as four decimal octets, {@code .}/{@code ..} segments and repeated slashes
+     * are resolved in the path, and finally control characters, non-ASCII bytes, '#' and '%' are escaped again.
+     */
+    private static CanonicalUrl canonicalize(String url) {
+        String rest = url.strip().replaceAll("[\\t\\r\\n]", "");
+        int fragment = rest.indexOf('#');
+        if (fragment >= 0) {
+            rest = rest.substring(0, fragment);
+        }
+        rest = unescape(rest);
+        int schemeEnd = rest.indexOf("://");
+        if (schemeEnd >= 0) {
+            rest = rest.substring(schemeEnd + 3);
+        }
+
+        int pathStart = rest.length();
+        for (char delimiter : new char[] {'/', '?'}) {
+            int index = rest.indexOf(delimiter);
+            if (index >= 0 && index < pathStart) {
+                pathStart = index;
+            }
+        }
+        String host = rest.substring(0, pathStart);
+        host = host.substring(host.lastIndexOf('@') + 1);
+        int port = host.lastIndexOf(':');
+        if (port >= 0 && port > host.lastIndexOf(']')) {
+            host = host.substring(0, port);
+        }
+        host = host.toLowerCase(Locale.ROOT).replaceAll("\\.{2,}", ".").replaceAll("^\\.+|\\.+$", "");
+        host = Objects.requireNonNullElse(normalizeIpv4(host), host);
+
+        String pathAndQuery = rest.substring(pathStart);
+        int queryStart = pathAndQuery.indexOf('?');
+        String path = queryStart >= 0 ? pathAndQuery.substring(0, queryStart) : pathAndQuery;
+        String query = queryStart >= 0 ? escape(pathAndQuery.substring(queryStart + 1)) : null;
+        return new CanonicalUrl(escape(host), escape(normalizePath(path)), query);
+    }
+
+    // works on the UTF-8 bytes, returned one char per byte so that escape() sees every byte on its own
+    private static String unescape(String url) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        while (true) {
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream(bytes.length);
+            for (int i = 0; i < bytes.length; i++) {
+                int high = i + 2 < bytes.length ? Character.digit(bytes[i + 1], 16) : -1;
+                int low = high >= 0 ? Character.digit(bytes[i + 2], 16) : -1;
+                if (bytes[i] == '%' && low >= 0) {
+                    decoded.write(high << 4 | low);
+                    i += 2;
+                } else {
+                    decoded.write(bytes[i]);
+                }
+            }
+            // every decoded escape shortens the URL, so this ends once a round decodes nothing
+            if (decoded.size() == bytes.length) {
+                return new String(bytes, StandardCharsets.ISO_8859_1);
+            }
+            bytes = decoded.toByteArray();
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c <= 0x20 || c >= 0x7f || c == '#' || c == '%') {
+                escaped.append('%').append(HexFormat.of().withUpperCase().toHexDigits((byte) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Reads hosts like {@code 3279880203}, {@code 0xc3.0177.11} or {@code 195.127.0.11} as an IPv4 address,
+     * where every part is decimal, octal or hex and the last part fills the remaining bytes. Returns null when
+     * the host is not such an address.
+     */
+    private static String normalizeIpv4(String host) {
+        String[] parts = host.split("\\.", -1);
+        if (parts.length > 4) {
+            return null;
+        }
+        long address = 0;
+        for (int i = 0; i < parts.length; i++) {
+            long value = parseIpv4Part(parts[i]);
+            int bytes = i < parts.length - 1 ? 1 : 4 - i;
+            if (value < 0 || value >= 1L << (8 * bytes)) {
+                return null;
+            }
+            address = address << (8 * bytes) | value;
+        }
+        return (address >>> 24) + "." + (address >>> 16 & 0xff) + "." + (address >>> 8 & 0xff) + "." + (address & 0xff);
+    }
+
+    private static long parseIpv4Part(String part) {
+        try {
+            if (part.matches("0x[0-9a-f]*")) {
+                return part.length() == 2 ? 0 : Long.parseLong(part.substring(2), 16);
+            }
+            if (part.matches("0[0-7]+")) {
+                return Long.parseLong(part.substring(1), 8);
+            }
+            return part.matches("[0-9]+") ? Long.parseLong(part) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String normalizePath(String path) {
+        String[] parts = path.split("/", -1);
+        Deque<String> segments = new ArrayDeque<>();
+        for (String part : parts) {
+            if (part.equals("..")) {
+                segments.pollLast();
+            } else if (!part.isEmpty() && !part.equals(".")) {
+                segments.addLast(part);
+            }
+        }
+        String last = parts[parts.length - 1];
+        String normalized = "/" + String.join("/", segments);
+        boolean trailingSlash = last.isEmpty() || last.equals(".") || last.equals("..");
+        return trailingSlash && !segments.isEmpty() ? normalized + "/" : normalized;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        updater.shutdownNow();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.api.service;
+
+import java.util.concurrent.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs every mailbox's polling cycles on a small shared scheduled pool,
+ * with IDLE sessions on their own cached platform threads.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "monitoring.engine", havingValue = "pool", matchIfMissing = true)
+public class ScheduledPoolMonitoringEngine implements MonitoringEngine {
+
+    private static final int POOL_SIZE = 5;
+
+    private final ScheduledExecutorService scheduledExecutor;
+    private final ExecutorService sessionExecutor;
+
+    public ScheduledPoolMonitoringEngine() {
+        this.scheduledExecutor = Executors.newScheduledThreadPool(POOL_SIZE);
+        this.sessionExecutor = Executors.newCachedThreadPool();
+    }
+
+    @Override
+    public MonitoringTask schedule(String name, MonitoringCycle cycle, long initialDelay) {
+        RescheduledTask task = new RescheduledTask(name, cycle);
+        task.scheduleNext(initialDelay);
+        return task;
+    }
+
+    @Override
+    public MonitoringTask runSession(String name, Runnable session) {
+        Future<?> future = sessionExecutor.submit(session);
+        return new MonitoringTask() {
+            @Override
+            public boolean isActive() {
+                return !future.isDone();
+            }
+
+            @Override
+            public void cancel() {
+                future.cancel(true);
+            }
+        };
+    }
+
+    @Override
+    public void shutdown() {
+        scheduledExecutor.shutdown();
+        sessionExecutor.shutdownNow();
+        try {
+            if (!scheduledExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
+                scheduledExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduledExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class RescheduledTask implements MonitoringTask {
+        private final String name;
+        private final MonitoringCycle cycle;
+        private volatile Future<?> current;
+        private volatile boolean cancelled;
+        private volatile boolean finished;
+
+        private RescheduledTask(String name, MonitoringCycle cycle) {
+            this.name = name;
+            this.cycle = cycle;
+        }
+
+        private void scheduleNext(long delay) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                current = scheduledExecutor.schedule(this::runOnce, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                finished = true;
+            }
+        }
+
+        private void runOnce() {
+            // cancel() can miss a run that scheduleNext() was handing to the executor at the same time
+            if (cancelled) {
+                return;
+            }
+            long nextDelay;
+            try {
+                nextDelay = cycle.run();
+            } catch (RuntimeException e) {
+                log.error("Monitoring cycle {} failed: {}", name, e.getMessage(), e);
+                nextDelay = -1;
+            }
+            if (nextDelay < 0) {
+                finished = true;
+            } else {
+                scheduleNext(nextDelay);
+            }
+        }
+
+        @Override
+        public boolean isActive() {
+            return !cancelled && !finished;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Future<?> future = current;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.api.service;
+
+import java.net.IDN;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reduces links found in an email to one canonical form per target, so that variants of the same link
+ * are only checked once. Only http(s) URLs with a host are kept; {@code mailto:}, anchors and relative
+ * links are dropped. The scheme and host are lower-cased, IDN hosts converted to punycode, default ports
+ * and fragments removed, percent-encoding normalized and tracking parameters stripped from the query.
+ */
+@Slf4j
+@Component
+public class UrlCanonicalizer {
+
+    private static final String UNRESERVED = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-._~";
+    // characters URI accepts outside of escapes, apart from the unreserved ones
+    private static final String ALLOWED = UNRESERVED + ":/?#@!$&'()*+,;=%";
+
+    private final Set<String> trackingParameters = new HashSet<>();
+    private final List<String> trackingPrefixes = new ArrayList<>();
+
+    public UrlCanonicalizer(@Value("${scan.urls.tracking-parameters:utm_*,fbclid,gclid,dclid,gbraid,wbraid,msclkid,yclid,"
+            + "mc_cid,mc_eid,_hsenc,_hsmi,mkt_tok,igshid,vero_id,oly_anon_id,oly_enc_id,_openstat}") List<String> trackingParameters) {
+        for (String parameter : trackingParameters) {
+            String name = parameter.strip().toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                trackingPrefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                this.trackingParameters.add(name);
+            }
+        }
+    }
+
+    /**
+     * Canonical, deduplicated forms of the scannable links, in the order they were first seen.
+     */
+    public List<String> canonicalize(Collection<String> links) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String link : links) {
+            canonicalize(link).ifPresent(unique::add);
+        }
+        return List.copyOf(unique);
+    }
+
+    public Optional<String> canonicalize(String link) {
+        String trimmed = link == null ? "" : link.strip();
+        if (trimmed.regionMatches(true, 0, "www.", 0, 4)) {
+            trimmed = "http://" + trimmed;
+        }
+
+        URI uri;
+        try {
+            uri = new URI(escapeIllegal(trimmed));
+        } catch (URISyntaxException e) {
+            log.debug("Skipping unparseable link {}: {}", link, e.getMessage());
+            return Optional.empty();
+        }
+
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!"http".equals(scheme) && !"https".equals(scheme) || uri.getRawAuthority() == null) {
+            return Optional.empty();
+        }
+
+        String authority = uri.getRawAuthority();
+        int at = authority.lastIndexOf('@');
+        String userInfo = at >= 0 ? authority.substring(0, at + 1) : "";
+        String hostPort = authority.substring(at + 1);
+        String port = "";
+        int colon = hostPort.lastIndexOf(':');
+        if (colon >= 0 && colon > hostPort.lastIndexOf(']')) {
+            port = hostPort.substring(colon + 1);
+            hostPort = hostPort.substring(0, colon);
+        }
+
+        String host;
+        try {
+            host = IDN.toASCII(decodeHost(hostPort), IDN.ALLOW_UNASSIGNED).toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            log.debug("Skipping link with invalid host {}: {}", link, e.getMessage());
+            return Optional.empty();
+        }
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        if (host.isEmpty()) {
+            return Optional.empty();
+        }
+        if (port.isEmpty() || "http".equals(scheme) && "80".equals(port) || "https".equals(scheme) && "443".equals(port)) {
+            port = "";
+        } else {
+            port = ":" + port;
+        }
+
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : normalizeEscapes(uri.getRawPath());
+        // resolve "." and ".." segments
+        path = URI.create("http://host" + path).normalize().getRawPath();
+
+        StringBuilder canonical = new StringBuilder(scheme).append("://").append(userInfo).append(host).append(port).append(path);
+        String query = canonicalQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            canonical.append('?').append(query);
+        }
+        return Optional.of(canonical.toString());
+    }
+
+    private String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        StringJoiner query = new StringJoiner("&");
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String name = normalizeEscapes(equals >= 0 ? parameter.substring(0, equals) : parameter);
+            if (!isTracking(name.toLowerCase(Locale.ROOT))) {
+                query.add(equals >= 0 ? name + "=" + normalizeEscapes(parameter.substring(equals + 1)) : name);
+            }
+        }
+        return query.toString();
+    }
+
+    private boolean isTracking(String name) {
+        if (trackingParameters.contains(name)) {
+            return true;
+        }
+        for (String prefix : trackingPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes escapes of unreserved characters, upper-cases the hex digits of the remaining ones
+     * and escapes raw non-ASCII characters as UTF-8.
+     */
+    private static String normalizeEscapes(String value) {
+        StringBuilder normalized = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length() && isHex(value.charAt(i + 1)) && isHex(value.charAt(i + 2))) {
+                char decoded = (char) Integer.parseInt(value.substring(i + 1, i + 3), 16);
+                if (UNRESERVED.indexOf(decoded) >= 0) {
+                    normalized.append(decoded);
+                } else {
+                    normalized.append('%').append(value.substring(i + 1, i + 3).toUpperCase(Locale.ROOT));
+                }
+                i += 2;
+            } else if (c > 0x7f) {
+                int codePoint = value.codePointAt(i);
+                appendEscaped(normalized, Character.toString(codePoint));
+                i += Character.charCount(codePoint) - 1;
+            } else {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Escapes characters {@link URI} would reject, such as spaces or stray {@code %} signs, which mail
+     * clients tolerate in links.
+     */
+    private static String escapeIllegal(String link) {
+        // brackets are only valid around an IPv6 host, and only the first '#' starts the fragment
+        int authorityStart = link.indexOf("://") + 3;
+        int authorityEnd = authorityStart;
+        while (authorityStart > 2 && authorityEnd < link.length() && "/?#".indexOf(link.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        boolean inFragment = false;
+
+        StringBuilder escaped = new StringBuilder(link.length());
+        for (int i = 0; i < link.length(); i++) {
+            char c = link.charAt(i);
+            boolean validEscape = c == '%' && i + 2 < link.length() && isHex(link.charAt(i + 1)) && isHex(link.charAt(i + 2));
+            boolean hostBracket = (c == '[' || c == ']') && i >= authorityStart && i < authorityEnd;
+            boolean fragmentStart = c == '#' && !inFragment;
+            if (c > 0x7f || hostBracket || fragmentStart
+                    || c != '#' && ALLOWED.indexOf(c) >= 0 && (c != '%' || validEscape)) {
+                escaped.append(c);
+            } else {
+                appendEscaped(escaped, String.valueOf(c));
+            }
+            inFragment |= fragmentStart;
+        }
+        return escaped.toString();
+    }
+
+    private static String decodeHost(String host) {
+        if (host.indexOf('%') < 0) {
+            return host;
+        }
+        return URLDecoder.decode(host.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    private static void appendEscaped(StringBuilder target, String value) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            target.append('%').append(String.format("%02X", b & 0xff));
+        }
+    }
+
+    private static boolean isHex(char c) {
+        return Character.digit(c, 16) >= 0;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.api.service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import com.example.api.exception.UrlScanApiException;
+import com.nimbusds.jose.shaded.gson.JsonArray;
+import com.nimbusds.jose.shaded.gson.JsonElement;
+import com.nimbusds.jose.shaded.gson.JsonObject;
+import com.nimbusds.jose.shaded.gson.JsonParser;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Waits for submitted URLScan.io scans to finish without holding a thread per scan.
+ * Pending scans are polled together: one search request asks which of the due UUIDs have a result, and only
+ * those results are fetched. Scans that are not ready yet are asked about again with exponential backoff,
+ * and given up on after {@code max-wait}, which is capped at the scan's {@code scan.checks.deadline}: past that
+ * the scan has already reported the check as failed, and polling on would only use up API quota.
+ */
+@Slf4j
+@Component
+public class UrlScanPoller {
+
+    // URLScan.io search returns at most this many hits per page
+    private static final int SEARCH_BATCH_SIZE = 100;
+    private static final long MAX_BACKOFF = 30000;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ConcurrentHashMap<String, PendingScan> pending = new ConcurrentHashMap<>();
+    private final String apiUrl;
+    private final String apiKey;
+    private final long initialDelay;
+    private final long pollInterval;
+    private final long maxWait;
+
+    private static final class PendingScan {
+        private final String uuid;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private final long submittedAt;
+        private long nextPollAt;
+        private int attempts;
+        private boolean inFlight;
+
+        private PendingScan(String uuid, long submittedAt, long nextPollAt) {
+            this.uuid = uuid;
+            this.submittedAt = submittedAt;
+            this.nextPollAt = nextPollAt;
+        }
+    }
+
+    public UrlScanPoller(@Value("${scan.urlscan.api-url:https://urlscan.io/api/v1}") String apiUrl,
+                         @Value("${urlscan.io.api.key}") String apiKey,
+                         @Value("${scan.urlscan.initial-delay:10000}") long initialDelay,
+                         @Value("${scan.urlscan.poll-interval:2000}") long pollInterval,
+                         @Value("${scan.urlscan.max-wait:80000}") long maxWait,
+                         @Value("${scan.checks.deadline:90000}") long checksDeadline,
+                         MeterRegistry meterRegistry) {
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.initialDelay = initialDelay;
+        this.pollInterval = pollInterval;
+        this.maxWait = Math.min(maxWait, checksDeadline);
+
+        Gauge.builder("urlscan.pending", pending, Map::size)
+                .description("Submitted URLScan.io scans waiting for a result")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Completes with true when the finished scan reports threat categories. Cancelling the future
+     * stops the polling for that scan.
+     */
+    public CompletableFuture<Boolean> await(String uuid) {
+        long now = System.currentTimeMillis();
+        PendingScan scan = new PendingScan(uuid, now, now + initialDelay);
+        pending.put(uuid, scan);
+        return scan.result;
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${scan.urlscan.poll-interval:2000}")
+    public void poll() {
+        long now = System.currentTimeMillis();
+        List<PendingScan> due = new ArrayList<>();
+        for (PendingScan scan : pending.values()) {
+            synchronized (scan) {
+                if (scan.result.isDone()) {
+                    pending.remove(scan.uuid, scan);
+                } else if (now - scan.submittedAt > maxWait) {
+                    pending.remove(scan.uuid, scan);
+                    scan.result.completeExceptionally(new UrlScanApiException("URLScan.io result not ready after " + maxWait + " ms"));
+                } else if (!scan.inFlight && now >= scan.nextPollAt) {
+                    scan.inFlight = true;
+                    due.add(scan);
+                }
+            }
+        }
+        for (int from = 0; from < due.size(); from += SEARCH_BATCH_SIZE) {
+            search(due.subList(from, Math.min(due.size(), from + SEARCH_BATCH_SIZE)));
+        }
+    }
+
+    private void search(List<PendingScan> batch) {
+        String query = "task.uuid:(" + String.join(" OR ", batch.stream().map(scan -> scan.uuid).toList()) + ")";
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(apiUrl + "/search/?size=" + SEARCH_BATCH_SIZE + "&q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)))
+                .header("API-Key", apiKey)
+                .GET()
+                .build();
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new UrlScanApiException("URLScan.io search failed with status: " + response.statusCode());
+                    }
+                    return finishedUuids(response.body());
+                })
+                .whenComplete((finished, error) -> {
+                    if (error != null) {
+                        log.warn("Polling {} URLScan.io scans failed: {}", batch.size(), error.getMessage());
+                    }
+                    for (PendingScan scan : batch) {
+                        if (finished != null && finished.contains(scan.uuid)) {
+                            fetchResult(scan);
+                        } else {
+                            backOff(scan);
+                        }
+                    }
+                });
+    }
+
+    private void fetchResult(PendingScan scan) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(apiUrl + "/result/" + scan.uuid + "/"))
+                .header("API-Key", apiKey)
+                .GET()
+                .build();
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    if (error != null || response.statusCode() == 404) {
+                        // indexed for search but the result document is not served yet
+                        backOff(scan);
+                        return;
+                    }
+                    pending.remove(scan.uuid, scan);
+                    if (response.statusCode() != 200) {
+                        scan.result.completeExceptionally(
+                                new UrlScanApiException("URLScan.io result fetch failed with status: " + response.statusCode()));
+                        return;
+                    }
+                    try {
+                        scan.result.complete(hasThreatCategories(response.body()));
+                    } catch (RuntimeException e) {
+                        scan.result.completeExceptionally(new UrlScanApiException("Unreadable URLScan.io result for " + scan.uuid, e));
+                    }
+                });
+    }
+
+    private void backOff(PendingScan scan) {
+        synchronized (scan) {
+            scan.attempts++;
+            long delay = Math.min(MAX_BACKOFF, pollInterval << Math.min(scan.attempts - 1, 16));
+            scan.nextPollAt = System.currentTimeMillis() + delay;
+            scan.inFlight = false;
+        }
+    }
+
+    private static Set<String> finishedUuids(String body) {
+        Set<String> finished = new HashSet<>();
+        JsonArray results = JsonParser.parseString(body).getAsJsonObject().getAsJsonArray("results");
+        if (results != null) {
+            for (JsonElement result : results) {
+                finished.add(result.getAsJsonObject().getAsJsonObject("task").get("uuid").getAsString());
+            }
+        }
+        return finished;
+    }
+
+    private static boolean hasThreatCategories(String body) {
+        JsonObject verdicts = JsonParser.parseString(body).getAsJsonObject()
+                .getAsJsonObject("verdicts").getAsJsonObject("urlscan");
+        return verdicts.has("categories") && !verdicts.getAsJsonArray("categories").isEmpty();
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import com.example.api.model.UrlVerdict;
+import com.example.api.repository.UrlVerdictRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers URL verdicts per source (Safe Browsing, URLScan.io), so that a link seen in many mailboxes
+ * is only looked up once, whichever variant of it the email contained: URLs are keyed by their
+ * {@link UrlCanonicalizer} form. Verdicts are kept in a bounded in-memory LRU and in the {@code url_verdicts}
+ * table, which survives restarts and is shared by all nodes. Clean verdicts expire after the shorter
+ * {@code negative-ttl}, so a URL that turns malicious is not missed for long; failed lookups are not cached.
+ * Concurrent lookups of the same URL wait on a single request.
+ */
+@Slf4j
+@Component
+public class UrlVerdictCache {
+
+    private record CachedVerdict(boolean malicious, long lookupMillis, long expiresAt) { }
+
+    private final UrlVerdictRepository urlVerdictRepository;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final long ttl;
+    private final long negativeTtl;
+    private final Map<String, CachedVerdict> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+    private final Timer latencySaved;
+
+    public UrlVerdictCache(UrlVerdictRepository urlVerdictRepository, UrlCanonicalizer urlCanonicalizer,
+                           @Value("${scan.verdict-cache.max-entries:100000}") int maxEntries,
+                           @Value("${scan.verdict-cache.ttl:86400000}") long ttl,
+                           @Value("${scan.verdict-cache.negative-ttl:3600000}") long negativeTtl,
+                           MeterRegistry meterRegistry) {
+        this.urlVerdictRepository = urlVerdictRepository;
+        this.urlCanonicalizer = urlCanonicalizer;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedVerdict> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.memoryHits = Counter.builder("verdict.cache.hits").tag("tier", "memory").register(meterRegistry);
+        this.databaseHits = Counter.builder("verdict.cache.hits").tag("tier", "database").register(meterRegistry);
+        this.misses = Counter.builder("verdict.cache.misses").register(meterRegistry);
+        this.latencySaved = Timer.builder("verdict.cache.latency.saved")
+                .description("Duration of the remote lookups that cache hits replaced")
+                .register(meterRegistry);
+        Gauge.builder("verdict.cache.hit.ratio", this, UrlVerdictCache::hitRatio).register(meterRegistry);
+        Gauge.builder("verdict.cache.size", this, UrlVerdictCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached verdict for the URL, or the result of {@code lookup}, which is cached when it succeeds.
+     * Each caller gets its own future, so cancelling one does not cancel the lookup other callers wait on.
+     */
+    public CompletableFuture<Boolean> get(String source, String url, Supplier<CompletableFuture<Boolean>> lookup) {
+        String canonicalUrl = urlCanonicalizer.canonicalize(url).orElse(url.strip());
+        String key = key(source, canonicalUrl);
+        CachedVerdict cached = fromMemory(key);
+        if (cached != null) {
+            memoryHits.increment();
+            latencySaved.record(cached.lookupMillis(), TimeUnit.MILLISECONDS);
+            return CompletableFuture.completedFuture(cached.malicious());
+        }
+
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> shared = inFlight.putIfAbsent(key, created);
+        if (shared != null) {
+            return shared.copy();
+        }
+
+        try {
+            cached = fromDatabase(key);
+            if (cached != null) {
+                databaseHits.increment();
+                latencySaved.record(cached.lookupMillis(), TimeUnit.MILLISECONDS);
+                putInMemory(key, cached);
+                inFlight.remove(key, created);
+                created.complete(cached.malicious());
+                return created.copy();
+            }
+
+            misses.increment();
+            long startedAt = System.currentTimeMillis();
+            lookup.get().whenComplete((malicious, error) -> {
+                if (error == null) {
+                    store(key, source, canonicalUrl, malicious, System.currentTimeMillis() - startedAt);
+                }
+                inFlight.remove(key, created);
+                if (error != null) {
+                    created.completeExceptionally(error);
+                } else {
+                    created.complete(malicious);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.copy();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${scan.verdict-cache.purge-interval:3600000}")
+    public void purge() {
+        int purged = urlVerdictRepository.deleteExpiredBefore(new Date());
+        if (purged > 0) {
+            log.info("Purged {} expired URL verdicts", purged);
+        }
+    }
+
+    private synchronized CachedVerdict fromMemory(String key) {
+        CachedVerdict cached = entries.get(key);
+        if (cached != null && cached.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return cached;
+    }
+
+    private synchronized void putInMemory(String key, CachedVerdict verdict) {
+        entries.put(key, verdict);
+    }
+
+    private CachedVerdict fromDatabase(String key) {
+        try {
+            return urlVerdictRepository.findById(key)
+                    .filter(verdict -> verdict.getExpiresAt().getTime() > System.currentTimeMillis())
+                    .map(verdict -> new CachedVerdict(verdict.isMalicious(), verdict.getLookupMillis(), verdict.getExpiresAt().getTime()))
+                    .orElse(null);
+        } catch (Exception e) {
+            log.warn("URL verdict lookup failed, checking remotely: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String key, String source, String url, boolean malicious, long lookupMillis) {
+        long expiresAt = System.currentTimeMillis() + (malicious ? ttl : negativeTtl);
+        putInMemory(key, new CachedVerdict(malicious, lookupMillis, expiresAt));
+        try {
+            String storedUrl = url.length() > UrlVerdict.URL_LENGTH ? url.substring(0, UrlVerdict.URL_LENGTH) : url;
+            urlVerdictRepository.save(new UrlVerdict(key, source, storedUrl, malicious, lookupMillis, new Date(expiresAt)));
+        } catch (Exception e) {
+            log.warn("Failed to persist verdict for {}: {}", url, e.getMessage());
+        }
+    }
+
+    private double hitRatio() {
+        double hits = memoryHits.count() + databaseHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private static String key(String source, String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest((source + "\0" + url).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.api.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives every mailbox its own virtual thread that sleeps between cycles or blocks in IDLE,
+ * so slow IMAP servers never hold on to a shared platform pool.
+ * JavaMail performs socket I/O inside synchronized blocks, which pins the carrier thread on
+ * JDKs before 24 (JEP 491); run on a newer JDK to get the full benefit.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "monitoring.engine", havingValue = "virtual")
+public class VirtualThreadMonitoringEngine implements MonitoringEngine {
+
+    private final ThreadFactory threadFactory = Thread.ofVirtual().name("mailbox-monitor-", 0).factory();
+    private final Set<VirtualThreadTask> tasks = ConcurrentHashMap.newKeySet();
+    private volatile boolean isRunning = true;
+
+    @Override
+    public MonitoringTask schedule(String name, MonitoringCycle cycle, long initialDelay) {
+        return start(name, task -> {
+            long delay = initialDelay;
+            while (!task.cancelled) {
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                try {
+                    delay = cycle.run();
+                } catch (RuntimeException e) {
+                    log.error("Monitoring cycle {} failed: {}", name, e.getMessage(), e);
+                    delay = -1;
+                }
+                if (delay < 0) {
+                    return;
+                }
+            }
+        });
+    }
+
+    @Override
+    public MonitoringTask runSession(String name, Runnable session) {
+        return start(name, task -> session.run());
+    }
+
+    private MonitoringTask start(String name, TaskBody body) {
+        VirtualThreadTask task = new VirtualThreadTask();
+        if (!isRunning) {
+            task.cancelled = true;
+            return task;
+        }
+        tasks.add(task);
+        task.thread = threadFactory.newThread(() -> {
+            try {
+                body.run(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                tasks.remove(task);
+                log.debug("Monitoring task {} finished", name);
+            }
+        });
+        task.thread.start();
+        return task;
+    }
+
+    @Override
+    public void shutdown() {
+        isRunning = false;
+        tasks.forEach(VirtualThreadTask::cancel);
+    }
+
+    @FunctionalInterface
+    private interface TaskBody {
+        void run(VirtualThreadTask task) throws InterruptedException;
+    }
+
+    private static final class VirtualThreadTask implements MonitoringTask {
+        private volatile Thread thread;
+        private volatile boolean cancelled;
+
+        @Override
+        public boolean isActive() {
+            Thread current = thread;
+            return !cancelled && current != null && current.isAlive();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Thread current = thread;
+            if (current != null) {
+                current.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.api;
+
+import com.example.api.dto.PollingScheduleEntry;
+import com.example.api.service.AdaptivePollingScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptivePollingSchedulerTest {
+
+    private static final long MIN_INTERVAL = 15000;
+    private static final long MAX_INTERVAL = 300000;
+    private static final long INITIAL_INTERVAL = 60000;
+
+    private AdaptivePollingScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new AdaptivePollingScheduler(MIN_INTERVAL, MAX_INTERVAL, INITIAL_INTERVAL);
+    }
+
+    @Test
+    void start_ShouldRunFirstCycleImmediately() {
+        assertEquals(0, scheduler.start("quiet@example.com_user"));
+    }
+
+    @Test
+    void next_ShouldBackOffQuietMailboxAndStayWithinBounds() {
+        scheduler.start("quiet@example.com_user");
+
+        long delay = 0;
+        for (int i = 0; i < 20; i++) {
+            delay = scheduler.next("quiet@example.com_user", 0);
+        }
+
+        assertTrue(delay >= MAX_INTERVAL * 0.9 && delay <= MAX_INTERVAL * 1.1);
+    }
+
+    @Test
+    void next_ShouldPollBusyMailboxMoreOftenThanQuietOne() {
+        scheduler.start("busy@example.com_user");
+        scheduler.start("quiet@example.com_user");
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.next("busy@example.com_user", 50);
+            scheduler.next("quiet@example.com_user", 0);
+        }
+
+        List<PollingScheduleEntry> schedule = scheduler.getSchedule();
+        long busyInterval = intervalOf(schedule, "busy@example.com_user");
+        long quietInterval = intervalOf(schedule, "quiet@example.com_user");
+
+        assertEquals(MIN_INTERVAL, busyInterval);
+        assertTrue(quietInterval > busyInterval);
+    }
+
+    @Test
+    void stop_ShouldRemoveMailboxFromSchedule() {
+        scheduler.start("quiet@example.com_user");
+        scheduler.stop("quiet@example.com_user");
+
+        assertTrue(scheduler.getSchedule().isEmpty());
+    }
+
+    private long intervalOf(List<PollingScheduleEntry> schedule, String mailbox) {
+        return schedule.stream()
+                .filter(entry -> entry.mailbox().equals(mailbox))
+                .findFirst()
+                .orElseThrow()
+                .intervalMillis();
+    }
+}
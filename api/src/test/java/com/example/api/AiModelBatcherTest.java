@@ -0,0 +1,101 @@
+package com.example.api;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import com.example.api.service.AiModelBatcher;
+import com.nimbusds.jose.shaded.gson.JsonArray;
+import com.nimbusds.jose.shaded.gson.JsonObject;
+import com.nimbusds.jose.shaded.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AiModelBatcherTest {
+
+    private HttpServer server;
+    private final List<JsonArray> requests = new CopyOnWriteArrayList<>();
+    private int status = 200;
+    private AiModelBatcher batcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // scores each text by its length, so every caller can tell its own result apart
+        server.createContext("/analyze-batch", exchange -> {
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            JsonArray texts = JsonParser.parseString(request).getAsJsonObject().getAsJsonArray("email_texts");
+            requests.add(texts);
+            JsonArray results = new JsonArray();
+            texts.forEach(text -> {
+                JsonObject result = new JsonObject();
+                result.addProperty("probability", text.getAsString().length() / 100f);
+                result.addProperty("is_phishing", false);
+                results.add(result);
+            });
+            JsonObject response = new JsonObject();
+            response.add("results", results);
+            byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+        server.stop(0);
+    }
+
+    private AiModelBatcher batcher(long window, int size) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/analyze-batch";
+        batcher = new AiModelBatcher(url, window, size, new SimpleMeterRegistry());
+        return batcher;
+    }
+
+    @Test
+    void analyze_ShouldShareOneRequestWithinWindow() throws Exception {
+        batcher(200, 32);
+
+        CompletableFuture<Float> first = batcher.analyze("Hello \"friend\"");
+        CompletableFuture<Float> second = batcher.analyze("Verify your account\nnow");
+
+        assertEquals(0.14f, first.get(5, TimeUnit.SECONDS), 0.0001f);
+        assertEquals(0.23f, second.get(5, TimeUnit.SECONDS), 0.0001f);
+        assertEquals(1, requests.size());
+        assertEquals("Hello \"friend\"", requests.getFirst().get(0).getAsString());
+    }
+
+    @Test
+    void analyze_ShouldSendFullBatchWithoutWaitingForWindow() throws Exception {
+        batcher(60000, 2);
+
+        CompletableFuture<Float> first = batcher.analyze("a");
+        CompletableFuture<Float> second = batcher.analyze("ab");
+
+        assertEquals(0.01f, first.get(5, TimeUnit.SECONDS), 0.0001f);
+        assertEquals(0.02f, second.get(5, TimeUnit.SECONDS), 0.0001f);
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void analyze_ShouldReportFailedBatchToEveryCaller() throws Exception {
+        status = 500;
+        batcher(50, 32);
+
+        CompletableFuture<Float> first = batcher.analyze("a");
+        CompletableFuture<Float> second = batcher.analyze("b");
+
+        assertEquals(-1f, first.get(5, TimeUnit.SECONDS));
+        assertEquals(-1f, second.get(5, TimeUnit.SECONDS));
+    }
+}
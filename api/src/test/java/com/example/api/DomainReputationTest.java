@@ -0,0 +1,83 @@
+package com.example.api;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import com.example.api.service.DomainReputation;
+import com.example.api.service.DomainReputation.Verdict;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DomainReputationTest {
+
+    @TempDir
+    Path dir;
+
+    private Path trusted;
+    private Path blocked;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        trusted = dir.resolve("trusted.txt");
+        blocked = dir.resolve("blocked.txt");
+        Files.writeString(trusted, """
+                # company domains
+                example.com
+                www.google.com
+                """);
+        Files.writeString(blocked, """
+                evil.example.com
+                *.phish.test  # campaign 42
+                """);
+    }
+
+    private DomainReputation reputation() {
+        return new DomainReputation(new FileSystemResource(trusted), new FileSystemResource(blocked));
+    }
+
+    @Test
+    void classify_ShouldCoverSubdomains() {
+        DomainReputation reputation = reputation();
+
+        assertEquals(Verdict.TRUSTED, reputation.classify("https://example.com/"));
+        assertEquals(Verdict.TRUSTED, reputation.classify("https://mail.example.com/inbox?id=1"));
+        assertEquals(Verdict.BLOCKED, reputation.classify("http://login.phish.test:8080/"));
+        assertEquals(Verdict.UNKNOWN, reputation.classify("https://notexample.com/"));
+        assertEquals(Verdict.UNKNOWN, reputation.classify("https://docs.google.com/forms"));
+        assertEquals(4, reputation.size());
+    }
+
+    @Test
+    void classify_ShouldPreferMostSpecificEntry() {
+        DomainReputation reputation = reputation();
+
+        assertEquals(Verdict.BLOCKED, reputation.classify("https://evil.example.com/login"));
+        assertEquals(Verdict.BLOCKED, reputation.classify("https://user@a.evil.example.com/"));
+    }
+
+    @Test
+    void classify_ShouldNotTrustLinksRedirectingElsewhere() {
+        DomainReputation reputation = reputation();
+
+        assertEquals(Verdict.UNKNOWN, reputation.classify("https://www.google.com/url?q=http://evil.example"));
+        assertEquals(Verdict.UNKNOWN, reputation.classify("https://www.google.com/url?q=https%3A%2F%2Fevil.example%2F"));
+        assertEquals(Verdict.TRUSTED, reputation.classify("https://www.google.com/search?q=weather"));
+        assertEquals(Verdict.BLOCKED, reputation.classify("https://evil.example.com/go?to=https://example.com"));
+    }
+
+    @Test
+    void reloadIfChanged_ShouldPickUpEditedFiles() throws Exception {
+        DomainReputation reputation = reputation();
+        assertEquals(Verdict.UNKNOWN, reputation.classify("https://bad.test/"));
+
+        Files.writeString(blocked, "bad.test\n");
+        Files.setLastModifiedTime(blocked, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        reputation.reloadIfChanged();
+
+        assertEquals(Verdict.BLOCKED, reputation.classify("https://bad.test/"));
+        assertEquals(Verdict.TRUSTED, reputation.classify("https://evil.example.com/"));
+    }
+}
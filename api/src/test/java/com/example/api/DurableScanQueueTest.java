@@ -0,0 +1,84 @@
+package com.example.api;
+
+import javax.mail.Address;
+import javax.mail.internet.InternetAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.example.api.dto.AttachmentInfo;
+import com.example.api.dto.EmailContent;
+import com.example.api.service.DurableScanQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableScanQueueTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DurableScanQueue open(int capacityMb) throws Exception {
+        return new DurableScanQueue(tempDir.resolve("scan-queue.journal").toString(), capacityMb, new SimpleMeterRegistry());
+    }
+
+    private EmailContent email(String messageId, String content) throws Exception {
+        return new EmailContent("test@example.com", "user-1", messageId, content, "Subject " + messageId,
+                new Address[]{new InternetAddress("Sender <sender@example.com>")},
+                List.of(new AttachmentInfo("invoice.pdf", "application/pdf", 1024)));
+    }
+
+    @Test
+    void poll_ShouldReturnOfferedEmailsInOrder() throws Exception {
+        DurableScanQueue queue = open(1);
+        queue.offer(email("m1", "first"));
+        queue.offer(email("m2", "second"));
+
+        DurableScanQueue.Entry first = queue.poll(1, TimeUnit.SECONDS);
+        DurableScanQueue.Entry second = queue.poll(1, TimeUnit.SECONDS);
+
+        assertEquals("m1", first.content().messageId());
+        assertEquals("first", first.content().content());
+        assertEquals("sender@example.com", ((InternetAddress) first.content().from()[0]).getAddress());
+        assertEquals("invoice.pdf", first.content().attachments().getFirst().fileName());
+        assertEquals("m2", second.content().messageId());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        queue.close();
+    }
+
+    @Test
+    void reopen_ShouldRedeliverUnacknowledgedEmailsOnly() throws Exception {
+        DurableScanQueue queue = open(1);
+        queue.offer(email("m1", "first"));
+        queue.offer(email("m2", "second"));
+        queue.offer(email("m3", "third"));
+        queue.ack(queue.poll(1, TimeUnit.SECONDS));
+        queue.poll(1, TimeUnit.SECONDS); // in flight when the process stops
+        queue.ack(queue.poll(1, TimeUnit.SECONDS));
+        queue.close();
+
+        DurableScanQueue reopened = open(1);
+        assertEquals(1, reopened.size());
+        assertEquals("m2", reopened.poll(1, TimeUnit.SECONDS).content().messageId());
+        assertNull(reopened.poll(10, TimeUnit.MILLISECONDS));
+        reopened.close();
+    }
+
+    @Test
+    void offer_ShouldReuseSpaceOfAcknowledgedEmails() throws Exception {
+        DurableScanQueue queue = open(1);
+        String body = "x".repeat(100 * 1024);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(queue.offer(email("m" + i, body)), "offer " + i);
+            queue.ack(queue.poll(1, TimeUnit.SECONDS));
+        }
+
+        int accepted = 0;
+        while (queue.offer(email("full" + accepted, body))) {
+            accepted++;
+        }
+        assertTrue(accepted >= 9 && accepted <= 10, "accepted " + accepted);
+        queue.close();
+    }
+}
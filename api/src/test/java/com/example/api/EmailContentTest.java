@@ -0,0 +1,67 @@
+package com.example.api;
+
+import com.example.api.dto.AttachmentInfo;
+import com.example.api.dto.EmailContent;
+import org.junit.jupiter.api.Test;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailContentTest {
+
+    private MimeMessage createMessage() throws Exception {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setFrom(new InternetAddress("sender@example.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("test@example.com"));
+        message.setSubject("Invoice");
+        return message;
+    }
+
+    @Test
+    void fromMessage_ShouldPreferHtmlAndRecordAttachmentsWithoutContent() throws Exception {
+        MimeBodyPart plain = new MimeBodyPart();
+        plain.setText("Plain body", "UTF-8");
+        MimeBodyPart html = new MimeBodyPart();
+        html.setContent("<p>Html <b>body</b></p>", "text/html; charset=UTF-8");
+        MimeMultipart alternative = new MimeMultipart("alternative", plain, html);
+
+        MimeBodyPart body = new MimeBodyPart();
+        body.setContent(alternative);
+        MimeBodyPart attachment = new MimeBodyPart();
+        attachment.setContent(new byte[1024], "application/pdf");
+        attachment.setFileName("invoice.pdf");
+        attachment.setDisposition(MimeBodyPart.ATTACHMENT);
+
+        MimeMessage message = createMessage();
+        message.setContent(new MimeMultipart(body, attachment));
+        message.saveChanges();
+
+        EmailContent content = EmailContent.fromMessage(message, "test@example.com", "user-1", "id-1");
+
+        assertEquals("Html body", content.content());
+        assertEquals("Invoice", content.subject());
+        assertEquals(1, content.attachments().size());
+        AttachmentInfo info = content.attachments().get(0);
+        assertEquals("invoice.pdf", info.fileName());
+        assertEquals("application/pdf", info.mimeType());
+    }
+
+    @Test
+    void fromMessage_ShouldReturnPlainTextForSinglePartMessage() throws Exception {
+        MimeMessage message = createMessage();
+        message.setText("Just text", "UTF-8");
+        message.saveChanges();
+
+        EmailContent content = EmailContent.fromMessage(message, "test@example.com", "user-1", "id-2");
+
+        assertEquals("Just text", content.content());
+        assertTrue(content.attachments().isEmpty());
+    }
+}
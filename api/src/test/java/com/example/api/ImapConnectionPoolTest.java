@@ -0,0 +1,80 @@
+package com.example.api;
+
+import javax.mail.Store;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import com.example.api.dto.EmailConfigRequest;
+import com.example.api.exception.HostCapacityException;
+import com.example.api.service.ImapConnectionPool;
+import com.example.api.service.ImapHostLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ImapConnectionPoolTest {
+
+    private static final String HOST = "imap.wp.pl";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, Store> stores = new HashMap<>();
+    private ImapConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        // two connections per host, shared by more mailboxes than that
+        ImapHostLimiter limiter = new ImapHostLimiter(2, 1000, Map.of(), meterRegistry);
+        pool = new ImapConnectionPool(limiter, 1) {
+            @Override
+            protected Store connect(EmailConfigRequest config, String password) {
+                Store store = mock(Store.class);
+                stores.put(config.username(), store);
+                return store;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.closeAll();
+    }
+
+    private Store acquire(String email) throws Exception {
+        return pool.acquire(email, new EmailConfigRequest("wp", null, null, email, "user-1"), "password");
+    }
+
+    @Test
+    void acquire_ShouldEvictLeastRecentlyUsedIdleConnectionWhenHostIsFull() throws Exception {
+        acquire("a@wp.pl");
+        pool.release("a@wp.pl");
+        Thread.sleep(5);
+        acquire("b@wp.pl");
+        pool.release("b@wp.pl");
+
+        acquire("c@wp.pl");
+
+        verify(stores.get("a@wp.pl")).close();
+        verify(stores.get("b@wp.pl"), never()).close();
+        assertEquals(2, pool.size());
+        assertEquals(2, meterRegistry.get("imap.host.connections.open").tag("host", HOST).gauge().value());
+    }
+
+    @Test
+    void acquire_ShouldFailFastWhenEveryConnectionToHostIsLeased() throws Exception {
+        acquire("a@wp.pl");
+        acquire("b@wp.pl");
+
+        long start = System.nanoTime();
+        assertThrows(HostCapacityException.class, () -> acquire("c@wp.pl"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        verify(stores.get("a@wp.pl"), never()).close();
+
+        // once a mailbox hands its connection back, the next one gets in
+        pool.release("b@wp.pl");
+        acquire("c@wp.pl");
+        verify(stores.get("b@wp.pl")).close();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.api;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.example.api.exception.HostCapacityException;
+import com.example.api.service.ImapHostLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImapHostLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void acquire_ShouldRefuseWithoutWaitingWhenHostIsFull() throws Exception {
+        ImapHostLimiter limiter = new ImapHostLimiter(1, 1000, Map.of(), meterRegistry);
+        limiter.acquire("imap.wp.pl", "a", () -> false);
+
+        long start = System.nanoTime();
+        assertThrows(HostCapacityException.class, () -> limiter.acquire("imap.wp.pl", "b", () -> false));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(1, meterRegistry.get("imap.host.admission.rejected").tag("host", "imap.wp.pl").counter().count());
+
+        limiter.release("imap.wp.pl");
+        limiter.acquire("imap.wp.pl", "b", () -> false);
+        assertEquals(1, meterRegistry.get("imap.host.connections.open").tag("host", "imap.wp.pl").gauge().value());
+    }
+
+    @Test
+    void acquire_ShouldAdmitWhenRoomIsMade() throws Exception {
+        ImapHostLimiter limiter = new ImapHostLimiter(1, 1000, Map.of(), meterRegistry);
+        limiter.acquire("imap.wp.pl", "a", () -> false);
+
+        AtomicInteger evictions = new AtomicInteger();
+        limiter.acquire("imap.wp.pl", "b", () -> {
+            evictions.incrementAndGet();
+            limiter.release("imap.wp.pl");
+            return true;
+        });
+
+        assertEquals(1, evictions.get());
+        assertEquals(1, meterRegistry.get("imap.host.connections.open").tag("host", "imap.wp.pl").gauge().value());
+    }
+
+    @Test
+    void acquire_ShouldKeepFreedSlotForMailboxFirstInLine() throws Exception {
+        ImapHostLimiter limiter = new ImapHostLimiter(1, 1000, Map.of(), meterRegistry);
+        limiter.acquire("imap.wp.pl", "a", () -> false);
+        assertThrows(HostCapacityException.class, () -> limiter.acquire("imap.wp.pl", "slow", () -> false));
+        assertThrows(HostCapacityException.class, () -> limiter.acquire("imap.wp.pl", "fast", () -> false));
+        assertEquals(2, meterRegistry.get("imap.host.connections.waiting").tag("host", "imap.wp.pl").gauge().value());
+
+        Thread.sleep(50);
+        limiter.release("imap.wp.pl");
+
+        // the mailbox that asks first after the release is not the one that has waited longest
+        assertThrows(HostCapacityException.class, () -> limiter.acquire("imap.wp.pl", "fast", () -> false));
+        limiter.acquire("imap.wp.pl", "slow", () -> false);
+
+        assertEquals(1, meterRegistry.get("imap.host.connections.waiting").tag("host", "imap.wp.pl").gauge().value());
+        assertTrue(meterRegistry.get("imap.host.admission.wait").tag("host", "imap.wp.pl").timer().max(TimeUnit.MILLISECONDS) >= 50);
+    }
+
+    @Test
+    void acquire_ShouldOnlyLetMailboxFirstInLineMakeRoom() throws Exception {
+        ImapHostLimiter limiter = new ImapHostLimiter(1, 1000, Map.of(), meterRegistry);
+        limiter.acquire("imap.wp.pl", "a", () -> false);
+        assertThrows(HostCapacityException.class, () -> limiter.acquire("imap.wp.pl", "b", () -> false));
+
+        AtomicInteger evictions = new AtomicInteger();
+        assertThrows(HostCapacityException.class, () -> limiter.acquire("imap.wp.pl", "c", () -> {
+            evictions.incrementAndGet();
+            return true;
+        }));
+
+        assertEquals(0, evictions.get());
+    }
+
+    @Test
+    void acquire_ShouldApplyHostOverridesAndRateLimit() throws Exception {
+        ImapHostLimiter limiter = new ImapHostLimiter(1, 10, Map.of("imap.gmail.com", 3), meterRegistry);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("imap.gmail.com", "mailbox-" + i, () -> false);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // three connects at 10 per second are at least two spacings apart
+        assertTrue(elapsed >= 180, "elapsed " + elapsed);
+        assertEquals(3, meterRegistry.get("imap.host.connections.open").tag("host", "imap.gmail.com").gauge().value());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.api;
+
+import java.util.Optional;
+import com.example.api.model.Mailbox;
+import com.example.api.repository.MailboxRepository;
+import com.example.api.service.MailboxCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MailboxCacheTest {
+
+    private static final String EMAIL = "test@example.com";
+    private static final String USER_ID = "test-user-id";
+
+    @Mock
+    private MailboxRepository mailboxRepository;
+
+    private Mailbox mailbox;
+
+    @BeforeEach
+    void setUp() {
+        mailbox = new Mailbox();
+        mailbox.setId(1L);
+        mailbox.setEmail(EMAIL);
+        mailbox.setUserId(USER_ID);
+        mailbox.setPassword("password");
+    }
+
+    @Test
+    void findByEmailAndUserId_ShouldHitDatabaseOnce() {
+        MailboxCache cache = new MailboxCache(mailboxRepository, 100, 60000);
+        when(mailboxRepository.findByEmailAndUserId(EMAIL, USER_ID)).thenReturn(Optional.of(mailbox));
+
+        assertSame(mailbox, cache.findByEmailAndUserId(EMAIL, USER_ID).orElseThrow());
+        assertSame(mailbox, cache.findByEmailAndUserId(EMAIL, USER_ID).orElseThrow());
+
+        verify(mailboxRepository, times(1)).findByEmailAndUserId(EMAIL, USER_ID);
+    }
+
+    @Test
+    void invalidate_ShouldForceReload() {
+        MailboxCache cache = new MailboxCache(mailboxRepository, 100, 60000);
+        when(mailboxRepository.findByEmailAndUserId(EMAIL, USER_ID)).thenReturn(Optional.of(mailbox));
+
+        cache.findByEmailAndUserId(EMAIL, USER_ID);
+        cache.invalidate(1L);
+        cache.findByEmailAndUserId(EMAIL, USER_ID);
+        cache.invalidateUser(USER_ID);
+        cache.findByEmailAndUserId(EMAIL, USER_ID);
+
+        verify(mailboxRepository, times(3)).findByEmailAndUserId(EMAIL, USER_ID);
+    }
+
+    @Test
+    void findByEmailAndUserId_ShouldExpireAndStayBounded() throws InterruptedException {
+        MailboxCache cache = new MailboxCache(mailboxRepository, 1, 20);
+        when(mailboxRepository.findByEmailAndUserId(anyString(), eq(USER_ID))).thenReturn(Optional.of(mailbox));
+
+        cache.findByEmailAndUserId(EMAIL, USER_ID);
+        cache.findByEmailAndUserId("other@example.com", USER_ID);
+        assertEquals(1, cache.size());
+
+        Thread.sleep(30);
+        cache.findByEmailAndUserId("other@example.com", USER_ID);
+
+        verify(mailboxRepository, times(2)).findByEmailAndUserId("other@example.com", USER_ID);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.api;
+
+import com.example.api.service.MailboxCircuitBreaker;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailboxCircuitBreakerTest {
+
+    private static final String KEY = "test@example.com_user-1";
+
+    private final MailboxCircuitBreaker breaker = new MailboxCircuitBreaker(3, 1000, 10000);
+
+    @Test
+    void onFailure_ShouldOpenOnceAfterThreshold() {
+        assertFalse(breaker.onFailure(KEY).opened());
+        assertFalse(breaker.onFailure(KEY).opened());
+        assertTrue(breaker.onFailure(KEY).opened());
+        assertEquals(MailboxCircuitBreaker.State.OPEN, breaker.getState(KEY));
+
+        breaker.beforeAttempt(KEY);
+        assertEquals(MailboxCircuitBreaker.State.HALF_OPEN, breaker.getState(KEY));
+        assertFalse(breaker.onFailure(KEY).opened());
+        assertEquals(MailboxCircuitBreaker.State.OPEN, breaker.getState(KEY));
+    }
+
+    @Test
+    void onFailure_ShouldBackOffExponentiallyWithJitterUpToMax() {
+        long first = breaker.onFailure(KEY).retryDelay();
+        long second = breaker.onFailure(KEY).retryDelay();
+        long third = breaker.onFailure(KEY).retryDelay();
+        for (int i = 0; i < 10; i++) {
+            breaker.onFailure(KEY);
+        }
+        long capped = breaker.onFailure(KEY).retryDelay();
+
+        assertTrue(first >= 500 && first <= 1000, "first " + first);
+        assertTrue(second >= 1000 && second <= 2000, "second " + second);
+        assertTrue(third >= 2000 && third <= 4000, "third " + third);
+        assertTrue(capped >= 5000 && capped <= 10000, "capped " + capped);
+    }
+
+    @Test
+    void onSuccess_ShouldCloseAndReportRecovery() {
+        breaker.onFailure(KEY);
+        assertFalse(breaker.onSuccess(KEY));
+
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(KEY);
+        }
+        breaker.beforeAttempt(KEY);
+        assertTrue(breaker.onSuccess(KEY));
+        assertEquals(MailboxCircuitBreaker.State.CLOSED, breaker.getState(KEY));
+    }
+}
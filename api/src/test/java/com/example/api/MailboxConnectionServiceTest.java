@@ -1,17 +1,41 @@
 package com.example.api;
 
 import com.example.api.dto.EmailConfigRequest;
+import com.example.api.model.FolderCheckpoint;
 import com.example.api.model.Mailbox;
+import com.example.api.repository.FolderCheckpointRepository;
 import com.example.api.repository.MailboxRepository;
+import com.example.api.service.AdaptivePollingScheduler;
+import com.example.api.service.DurableScanQueue;
+import com.example.api.service.ImapConnectionPool;
+import com.example.api.service.MailboxCache;
+import com.example.api.service.MailboxCircuitBreaker;
 import com.example.api.service.MailboxConnectionServiceImpl;
+import com.example.api.service.MailboxLeaseService;
+import com.example.api.service.MailboxOwnershipEvent;
+import com.example.api.service.MessageDedupFilter;
+import com.example.api.service.ProcessedMessageLedger;
+import com.example.api.service.MonitoringCycle;
+import com.example.api.service.MonitoringEngine;
+import com.example.api.service.MonitoringTask;
+import com.example.api.service.PollingBulkhead;
+import com.example.api.service.ReconnectRamp;
+import com.sun.mail.imap.IMAPFolder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.Store;
+import javax.mail.UIDFolder;
+import javax.mail.internet.MimeMessage;
 import java.util.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,6 +46,42 @@ class MailboxConnectionServiceTest {
     @Mock
     private MailboxRepository mailboxRepository;
 
+    @Mock
+    private FolderCheckpointRepository checkpointRepository;
+
+    @Mock
+    private ImapConnectionPool connectionPool;
+
+    @Mock
+    private MonitoringEngine monitoringEngine;
+
+    @Mock
+    private AdaptivePollingScheduler pollingScheduler;
+
+    @Mock
+    private MailboxLeaseService leaseService;
+
+    @Mock
+    private ReconnectRamp reconnectRamp;
+
+    @Mock
+    private DurableScanQueue phishingScanQueue;
+
+    @Mock
+    private MessageDedupFilter processedMessages;
+
+    @Mock
+    private ProcessedMessageLedger processedMessageLedger;
+
+    @Mock
+    private MailboxCircuitBreaker circuitBreaker;
+
+    @Mock
+    private PollingBulkhead pollingBulkhead;
+
+    @Mock
+    private MailboxCache mailboxCache;
+
     @InjectMocks
     private MailboxConnectionServiceImpl mailboxConnectionService;
 
@@ -45,6 +105,28 @@ class MailboxConnectionServiceTest {
 
         Mockito.lenient().when(mailboxRepository.findByEmailAndUserId(TEST_EMAIL, TEST_USER_ID))
                 .thenReturn(Optional.of(testMailbox));
+
+        Mockito.lenient().when(monitoringEngine.schedule(anyString(), any(), anyLong()))
+                .thenAnswer(invocation -> new StubTask());
+
+        Mockito.lenient().when(leaseService.claim(any())).thenReturn(true);
+        Mockito.lenient().when(mailboxCache.findByEmailAndUserId(anyString(), anyString()))
+                .thenAnswer(invocation -> mailboxRepository.findByEmailAndUserId(invocation.getArgument(0), invocation.getArgument(1)));
+        Mockito.lenient().when(circuitBreaker.getState(anyString())).thenReturn(MailboxCircuitBreaker.State.CLOSED);
+    }
+
+    private static class StubTask implements MonitoringTask {
+        private boolean active = true;
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public void cancel() {
+            active = false;
+        }
     }
 
     @Test
@@ -127,6 +209,7 @@ class MailboxConnectionServiceTest {
                 TEST_USER_ID
         );
         mailboxConnectionService.startMonitoring(config2);
+        when(mailboxRepository.findByUserId(TEST_USER_ID)).thenReturn(List.of(mailbox1, mailbox2));
 
         mailboxConnectionService.stopAllMailboxMonitoring(TEST_USER_ID);
 
@@ -134,6 +217,22 @@ class MailboxConnectionServiceTest {
         assertTrue(states.isEmpty());
     }
 
+    @Test
+    void stopAllMailboxMonitoring_ShouldClearMailboxesMonitoredByOtherNodes() {
+        Mailbox remote = new Mailbox();
+        remote.setId(2L);
+        remote.setEmail(TEST_EMAIL);
+        remote.setUserId(TEST_USER_ID);
+        remote.setMonitored(true);
+        when(mailboxRepository.findByUserId(TEST_USER_ID)).thenReturn(List.of(remote));
+        when(mailboxRepository.findByEmailAndUserId(TEST_EMAIL, TEST_USER_ID)).thenReturn(Optional.of(remote));
+
+        mailboxConnectionService.stopAllMailboxMonitoring(TEST_USER_ID);
+
+        verify(mailboxRepository).updateMonitored(2L, false);
+        verify(leaseService).release(remote);
+    }
+
     @Test
     void cleanup_ShouldStopAllTasksAndExecutors() {
         mailboxConnectionService.startMonitoring(testConfig);
@@ -142,5 +241,172 @@ class MailboxConnectionServiceTest {
 
         Map<String, Boolean> states = mailboxConnectionService.getMailboxConnectionStates(TEST_USER_ID);
         assertTrue(states.isEmpty());
+        verify(monitoringEngine).shutdown();
+    }
+
+    @Test
+    void startMonitoring_ShouldNotScheduleTwiceForSameMailbox() {
+        mailboxConnectionService.startMonitoring(testConfig);
+        mailboxConnectionService.startMonitoring(testConfig);
+
+        verify(monitoringEngine, times(1)).schedule(anyString(), any(), anyLong());
+    }
+
+    @Test
+    void startMonitoring_ShouldNotStartWhenLeaseHeldByAnotherNode() {
+        when(leaseService.claim(any())).thenReturn(false);
+
+        mailboxConnectionService.startMonitoring(testConfig);
+
+        verify(monitoringEngine, never()).schedule(anyString(), any(), anyLong());
+        verify(mailboxRepository).updateMonitored(any(), eq(true));
+    }
+
+    @Test
+    void ownershipEvents_ShouldStartAndStopLocalMonitoring() {
+        Mailbox mailbox = new Mailbox();
+        mailbox.setEmail(TEST_EMAIL);
+        mailbox.setUserId(TEST_USER_ID);
+        mailbox.setType("imap.test.com");
+
+        mailboxConnectionService.onMailboxOwnershipChanged(new MailboxOwnershipEvent(mailbox, true));
+        assertTrue(mailboxConnectionService.getMailboxConnectionStates(TEST_USER_ID).get(TEST_EMAIL));
+
+        mailboxConnectionService.onMailboxOwnershipChanged(new MailboxOwnershipEvent(mailbox, false));
+        assertFalse(mailboxConnectionService.getMailboxConnectionStates(TEST_USER_ID).containsKey(TEST_EMAIL));
+        verify(leaseService, never()).release(any());
+    }
+
+    @Test
+    void resumeMonitoring_ShouldDelayFirstCycleToRampSlot() {
+        when(reconnectRamp.reserve("imap.test.com")).thenReturn(400L);
+
+        mailboxConnectionService.resumeMonitoring(testConfig);
+
+        verify(monitoringEngine).schedule(anyString(), any(), eq(400L));
+        verify(mailboxRepository, never()).updateMonitored(any(), anyBoolean());
+    }
+
+    @Test
+    void getMailboxConnectionStates_ShouldReportOpenBreakerAsDisconnected() {
+        mailboxConnectionService.startMonitoring(testConfig);
+        when(circuitBreaker.getState(TEST_EMAIL + "_" + TEST_USER_ID)).thenReturn(MailboxCircuitBreaker.State.OPEN);
+
+        assertFalse(mailboxConnectionService.getMailboxConnectionStates(TEST_USER_ID).get(TEST_EMAIL));
+    }
+
+    private static MimeMessage message(String text) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setSubject("Invoice");
+        message.setText(text, "UTF-8");
+        message.saveChanges();
+        return message;
+    }
+
+    @Test
+    void syncNewMessages_ShouldNotAdvanceCheckpointPastMessagesTheQueueRefused() throws Exception {
+        Mailbox mailbox = new Mailbox();
+        mailbox.setId(1L);
+        mailbox.setEmail(TEST_EMAIL);
+        FolderCheckpoint checkpoint = new FolderCheckpoint();
+        checkpoint.setId(5L);
+        checkpoint.setMailbox(mailbox);
+        checkpoint.setFolderName("INBOX");
+        checkpoint.setUidValidity(100);
+        checkpoint.setLastUid(10);
+        when(checkpointRepository.findByMailboxIdAndFolderName(1L, "INBOX")).thenReturn(Optional.of(checkpoint));
+        when(checkpointRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        MimeMessage accepted = message("first");
+        MimeMessage refused = message("second");
+        IMAPFolder folder = mock(IMAPFolder.class);
+        when(folder.getFullName()).thenReturn("INBOX");
+        when(folder.getUIDValidity()).thenReturn(100L);
+        when(folder.getHighestModSeq()).thenReturn(-1L);
+        when(folder.getMessagesByUID(11, UIDFolder.LASTUID)).thenReturn(new Message[]{accepted, refused});
+        when(folder.getUID(accepted)).thenReturn(11L);
+        when(folder.getUID(refused)).thenReturn(12L);
+        when(phishingScanQueue.offer(any())).thenReturn(true, false);
+
+        Integer queued = ReflectionTestUtils.invokeMethod(mailboxConnectionService, "syncNewMessages", folder, mailbox, testConfig);
+
+        assertEquals(1, queued);
+        assertEquals(11, checkpoint.getLastUid());
+        verify(processedMessages, times(1)).markIfNew(anyString());
+    }
+
+    @Test
+    void syncNewMessages_ShouldKeepCheckpointWhenNothingCouldBeQueued() throws Exception {
+        Mailbox mailbox = new Mailbox();
+        mailbox.setId(1L);
+        mailbox.setEmail(TEST_EMAIL);
+        FolderCheckpoint checkpoint = new FolderCheckpoint();
+        checkpoint.setId(5L);
+        checkpoint.setMailbox(mailbox);
+        checkpoint.setFolderName("INBOX");
+        checkpoint.setUidValidity(100);
+        checkpoint.setLastUid(10);
+        when(checkpointRepository.findByMailboxIdAndFolderName(1L, "INBOX")).thenReturn(Optional.of(checkpoint));
+
+        MimeMessage refused = message("only");
+        IMAPFolder folder = mock(IMAPFolder.class);
+        when(folder.getFullName()).thenReturn("INBOX");
+        when(folder.getUIDValidity()).thenReturn(100L);
+        when(folder.getHighestModSeq()).thenReturn(-1L);
+        when(folder.getMessagesByUID(11, UIDFolder.LASTUID)).thenReturn(new Message[]{refused});
+        when(folder.getUID(refused)).thenReturn(11L);
+        when(phishingScanQueue.offer(any())).thenReturn(false);
+
+        Integer queued = ReflectionTestUtils.invokeMethod(mailboxConnectionService, "syncNewMessages", folder, mailbox, testConfig);
+
+        assertEquals(0, queued);
+        assertEquals(10, checkpoint.getLastUid());
+        verify(checkpointRepository, never()).save(any());
+        verify(processedMessages, never()).markIfNew(anyString());
+    }
+
+    @Test
+    void resolveFolders_ShouldResolveAgainAfterFolderListIsEdited() throws Exception {
+        Mailbox mailbox = new Mailbox();
+        mailbox.setId(1L);
+        mailbox.setEmail(TEST_EMAIL);
+        mailbox.setFolders(List.of("INBOX", "Newsletters"));
+        Folder inbox = mock(Folder.class);
+        when(inbox.getFullName()).thenReturn("INBOX");
+        Folder newsletters = mock(Folder.class);
+        when(newsletters.getFullName()).thenReturn("Newsletters");
+        Folder root = mock(Folder.class);
+        when(root.list("*")).thenReturn(new Folder[]{inbox, newsletters});
+        Store store = mock(Store.class);
+        when(store.getDefaultFolder()).thenReturn(root);
+        String mailboxKey = TEST_EMAIL + "_" + TEST_USER_ID;
+
+        List<String> first = ReflectionTestUtils.invokeMethod(mailboxConnectionService, "resolveFolders", store, mailbox, mailboxKey);
+        List<String> cached = ReflectionTestUtils.invokeMethod(mailboxConnectionService, "resolveFolders", store, mailbox, mailboxKey);
+        mailbox.setFolders(List.of("INBOX"));
+        List<String> edited = ReflectionTestUtils.invokeMethod(mailboxConnectionService, "resolveFolders", store, mailbox, mailboxKey);
+
+        assertEquals(List.of("INBOX", "Newsletters"), first);
+        assertSame(first, cached);
+        assertEquals(List.of("INBOX"), edited);
+        verify(root, times(2)).list("*");
+        verify(checkpointRepository).deleteByMailboxIdAndFolderName(1L, "Newsletters");
+        verify(checkpointRepository, never()).deleteByMailboxIdAndFolderName(1L, "INBOX");
+    }
+
+    @Test
+    void pollingCycle_ShouldStopMonitoringWhenMailboxWasDeleted() {
+        when(pollingBulkhead.tryEnter("imap.test.com")).thenReturn(true);
+        mailboxConnectionService.startMonitoring(testConfig);
+        ArgumentCaptor<MonitoringCycle> cycle = ArgumentCaptor.forClass(MonitoringCycle.class);
+        verify(monitoringEngine).schedule(anyString(), cycle.capture(), anyLong());
+
+        // deleted on another node; the cache no longer finds it
+        when(mailboxRepository.findByEmailAndUserId(TEST_EMAIL, TEST_USER_ID)).thenReturn(Optional.empty());
+
+        assertEquals(-1, cycle.getValue().run());
+        verify(circuitBreaker, never()).onFailure(anyString());
+        verify(connectionPool).invalidate(TEST_EMAIL + "_" + TEST_USER_ID);
+        assertFalse(mailboxConnectionService.getMailboxConnectionStates(TEST_USER_ID).containsKey(TEST_EMAIL));
     }
-}
\ No newline at end of file
+}
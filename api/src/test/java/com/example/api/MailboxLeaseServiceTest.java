@@ -0,0 +1,85 @@
+package com.example.api;
+
+import java.util.List;
+import com.example.api.model.Mailbox;
+import com.example.api.model.MailboxLease;
+import com.example.api.repository.ClusterNodeRepository;
+import com.example.api.repository.MailboxLeaseRepository;
+import com.example.api.repository.MailboxRepository;
+import com.example.api.service.MailboxLeaseService;
+import com.example.api.service.MailboxOwnershipEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MailboxLeaseServiceTest {
+
+    private static final String NODE_ID = "node-1";
+
+    @Mock
+    private MailboxRepository mailboxRepository;
+
+    @Mock
+    private MailboxLeaseRepository leaseRepository;
+
+    @Mock
+    private ClusterNodeRepository clusterNodeRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private MailboxLeaseService leaseService;
+    private Mailbox mailbox;
+
+    @BeforeEach
+    void setUp() {
+        leaseService = new MailboxLeaseService(mailboxRepository, leaseRepository, clusterNodeRepository,
+                eventPublisher, true, 30000, NODE_ID);
+        when(clusterNodeRepository.countByLastHeartbeatAfter(any())).thenReturn(1L);
+
+        mailbox = new Mailbox();
+        mailbox.setId(1L);
+        mailbox.setEmail("test@example.com");
+        mailbox.setUserId("user-1");
+    }
+
+    private MailboxLease lease() {
+        MailboxLease lease = new MailboxLease();
+        lease.setMailboxId(mailbox.getId());
+        lease.setMailbox(mailbox);
+        lease.setOwnerId(NODE_ID);
+        return lease;
+    }
+
+    @Test
+    void heartbeat_ShouldStopLocalMonitoringOfMailboxNoLongerMonitored() {
+        when(mailboxRepository.findByMonitoredTrue()).thenReturn(List.of());
+        when(leaseRepository.findByOwnerId(NODE_ID)).thenReturn(List.of(lease()));
+
+        leaseService.heartbeat();
+
+        verify(leaseRepository).release(1L, NODE_ID);
+        verify(eventPublisher).publishEvent(new MailboxOwnershipEvent(mailbox, false));
+    }
+
+    @Test
+    void heartbeat_ShouldStopLocalMonitoringWhenLeaseDisappeared() {
+        when(mailboxRepository.findByMonitoredTrue()).thenReturn(List.of(mailbox));
+        when(leaseRepository.findByOwnerId(NODE_ID)).thenReturn(List.of(lease()));
+        leaseService.heartbeat();
+        verify(eventPublisher).publishEvent(new MailboxOwnershipEvent(mailbox, true));
+
+        // the mailbox was deleted on another node, taking its lease row with it
+        when(mailboxRepository.findByMonitoredTrue()).thenReturn(List.of());
+        when(leaseRepository.findByOwnerId(NODE_ID)).thenReturn(List.of());
+        leaseService.heartbeat();
+
+        verify(eventPublisher).publishEvent(new MailboxOwnershipEvent(mailbox, false));
+    }
+}
@@ -4,10 +4,13 @@ import com.example.api.exception.InvalidMailboxException;
 import com.example.api.exception.MailboxAlreadyExistsException;
 import com.example.api.model.Mailbox;
 import com.example.api.repository.MailboxRepository;
+import com.example.api.service.MailboxCache;
+import com.example.api.service.MailboxConnectionService;
 import com.example.api.service.MailboxServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -23,6 +26,12 @@ class MailboxServiceTest {
     @Mock
     private MailboxRepository mailboxRepository;
 
+    @Mock
+    private MailboxCache mailboxCache;
+
+    @Mock
+    private MailboxConnectionService mailboxConnectionService;
+
     @InjectMocks
     private MailboxServiceImpl mailboxService;
 
@@ -116,7 +125,24 @@ class MailboxServiceTest {
         assertEquals("newPassword", updatedMailbox.getPassword());
         assertEquals("IMAP", updatedMailbox.getType());
         assertEquals(mailboxId, updatedMailbox.getId());
-        verify(mailboxRepository).save(any(Mailbox.class));
+        // invalidated after the save, or a lookup in between would cache the old row again
+        InOrder inOrder = inOrder(mailboxRepository, mailboxCache);
+        inOrder.verify(mailboxRepository).save(any(Mailbox.class));
+        inOrder.verify(mailboxCache).invalidate(existingMailbox);
+    }
+
+    @Test
+    void updateMailbox_WithFolders_ShouldReplaceFolderList() {
+        Mailbox updateRequest = new Mailbox();
+        updateRequest.setFolders(List.of("INBOX", "\\Junk", "Newsletters"));
+
+        when(mailboxRepository.findById(mailboxId)).thenReturn(Optional.of(existingMailbox));
+        when(mailboxRepository.save(any(Mailbox.class))).thenAnswer(i -> i.getArgument(0));
+
+        Mailbox updatedMailbox = mailboxService.updateMailbox(updateRequest, userId, mailboxId);
+
+        assertEquals(List.of("INBOX", "\\Junk", "Newsletters"), updatedMailbox.getFolders());
+        assertEquals("existing@example.com", updatedMailbox.getEmail());
     }
 
     @Test
@@ -168,5 +194,17 @@ class MailboxServiceTest {
         mailboxService.deleteMailbox(mailboxId);
 
         verify(mailboxRepository).deleteById(mailboxId);
+        verify(mailboxCache).invalidate(mailboxId);
+    }
+
+    @Test
+    void deleteMailbox_ShouldStopMonitoringBeforeDeleting() {
+        when(mailboxRepository.findById(mailboxId)).thenReturn(Optional.of(existingMailbox));
+
+        mailboxService.deleteMailbox(mailboxId);
+
+        InOrder inOrder = inOrder(mailboxConnectionService, mailboxRepository);
+        inOrder.verify(mailboxConnectionService).stopMailboxMonitoring("existing@example.com", userId);
+        inOrder.verify(mailboxRepository).deleteById(mailboxId);
     }
-}
\ No newline at end of file
+}
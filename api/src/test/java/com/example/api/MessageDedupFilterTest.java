@@ -0,0 +1,50 @@
+package com.example.api;
+
+import com.example.api.service.MessageDedupFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageDedupFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void markIfNew_ShouldRecogniseRepeatedIdentity() {
+        MessageDedupFilter filter = new MessageDedupFilter(1000, 60000, meterRegistry);
+
+        assertTrue(filter.markIfNew("test@example.com_<abc@mail.example.com>"));
+        assertFalse(filter.markIfNew("test@example.com_<abc@mail.example.com>"));
+        assertTrue(filter.markIfNew("other@example.com_<abc@mail.example.com>"));
+
+        assertEquals(1, meterRegistry.get("dedup.hits").counter().count());
+        assertEquals(2, meterRegistry.get("dedup.misses").counter().count());
+    }
+
+    @Test
+    void markIfNew_ShouldEvictOldestGenerationWhenFull() {
+        MessageDedupFilter filter = new MessageDedupFilter(40, 60000, meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            filter.markIfNew("message-" + i);
+        }
+
+        assertTrue(filter.size() <= 40);
+        assertTrue(meterRegistry.get("dedup.evictions").counter().count() >= 60);
+        assertFalse(filter.markIfNew("message-99"));
+        assertTrue(filter.markIfNew("message-0"));
+    }
+
+    @Test
+    void markIfNew_ShouldForgetEntriesOlderThanMaxAge() throws InterruptedException {
+        MessageDedupFilter filter = new MessageDedupFilter(1000, 40, meterRegistry);
+
+        filter.markIfNew("message-0");
+        for (int i = 1; i <= 4; i++) {
+            Thread.sleep(15);
+            filter.markIfNew("message-" + i);
+        }
+
+        assertTrue(filter.markIfNew("message-0"));
+    }
+}
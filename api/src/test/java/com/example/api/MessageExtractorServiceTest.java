@@ -4,22 +4,27 @@ import com.example.api.dto.EmailContent;
 import com.example.api.model.Mailbox;
 import com.example.api.model.PhishingScanResult;
 import com.example.api.model.ScanLog;
-import com.example.api.repository.MailboxRepository;
 import com.example.api.repository.ScanLogRepository;
+import com.example.api.service.MailboxCache;
 import com.example.api.service.MessageExtractorServiceImpl;
 import com.example.api.service.PhishingScannerService;
+import com.example.api.service.ProcessedMessageLedger;
+import com.example.api.service.UrlCanonicalizer;
 import com.example.api.service.WebSocketNotificationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import javax.mail.Address;
 import javax.mail.internet.InternetAddress;
 import java.util.*;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -30,7 +35,7 @@ class MessageExtractorServiceTest {
     private ScanLogRepository scanLogRepository;
 
     @Mock
-    private MailboxRepository mailboxRepository;
+    private MailboxCache mailboxCache;
 
     @Mock
     private PhishingScannerService phishingScannerService;
@@ -38,6 +43,12 @@ class MessageExtractorServiceTest {
     @Mock
     private WebSocketNotificationService notificationService;
 
+    @Mock
+    private ProcessedMessageLedger processedMessageLedger;
+
+    @Spy
+    private UrlCanonicalizer urlCanonicalizer = new UrlCanonicalizer(List.of("utm_*", "fbclid"));
+
     @InjectMocks
     private MessageExtractorServiceImpl messageExtractorService;
 
@@ -67,7 +78,7 @@ class MessageExtractorServiceTest {
 
     @Test
     void performPhishingScan_Success() throws Exception {
-        when(mailboxRepository.findByEmailAndUserId(anyString(), anyString()))
+        when(mailboxCache.findByEmailAndUserId(anyString(), anyString()))
                 .thenReturn(Optional.of(testMailbox));
 
         when(phishingScannerService.scanEmail(anyString(), anyString(), anyString(), anyList()))
@@ -80,11 +91,28 @@ class MessageExtractorServiceTest {
 
         verify(scanLogRepository, times(2)).save(any(ScanLog.class));
         verify(notificationService, times(2)).sendScanLog(anyString(), anyString(), any(ScanLog.class));
+        InOrder inOrder = inOrder(scanLogRepository, processedMessageLedger);
+        inOrder.verify(scanLogRepository, times(2)).save(any(ScanLog.class));
+        inOrder.verify(processedMessageLedger).record(eq(1L), eq("test-message-id"), any());
+    }
+
+    @Test
+    void performPhishingScan_ShouldNotRecordMessageWhenScanFails() throws Exception {
+        when(mailboxCache.findByEmailAndUserId(anyString(), anyString()))
+                .thenReturn(Optional.of(testMailbox));
+        when(phishingScannerService.scanEmail(anyString(), anyString(), anyString(), anyList()))
+                .thenThrow(new IllegalStateException("scanner down"));
+        when(scanLogRepository.save(any(ScanLog.class)))
+                .thenAnswer(i -> i.getArgument(0));
+
+        assertThrows(RuntimeException.class, () -> messageExtractorService.performPhishingScan(testEmailContent));
+
+        verify(processedMessageLedger, never()).record(any(), any(), any());
     }
 
     @Test
     void performPhishingScan_WithThreatDetected() throws Exception {
-        when(mailboxRepository.findByEmailAndUserId(anyString(), anyString()))
+        when(mailboxCache.findByEmailAndUserId(anyString(), anyString()))
                 .thenReturn(Optional.of(testMailbox));
 
         PhishingScanResult threatResult = new PhishingScanResult(
@@ -105,4 +133,29 @@ class MessageExtractorServiceTest {
         verify(notificationService, times(2)).sendScanLog(anyString(), anyString(), any(ScanLog.class));
         verify(notificationService, times(1)).notifyThreatDetected(anyString(), anyString(), any(ScanLog.class));
     }
+
+    @Test
+    void performPhishingScan_ShouldScanEachLinkOnce() throws Exception {
+        EmailContent emailWithLinks = new EmailContent(
+                "test@example.com",
+                "test-user-id",
+                "test-message-id",
+                "Visit https://Example.com/offer?utm_source=mail or "
+                        + "<a href=\"https://example.com:443/offer?fbclid=abc#top\">here</a>, "
+                        + "<a href=\"mailto:support@example.com\">mail us</a> <a href=\"#footer\">more</a>",
+                "Test subject",
+                new Address[]{new InternetAddress("sender@example.com")}
+        );
+        when(mailboxCache.findByEmailAndUserId(anyString(), anyString()))
+                .thenReturn(Optional.of(testMailbox));
+        when(phishingScannerService.scanEmail(anyString(), anyString(), anyString(), anyList()))
+                .thenReturn(new PhishingScanResult(0, "Low", Collections.emptyList()));
+        when(scanLogRepository.save(any(ScanLog.class)))
+                .thenAnswer(i -> i.getArgument(0));
+
+        messageExtractorService.performPhishingScan(emailWithLinks);
+
+        verify(phishingScannerService).scanEmail(anyString(), anyString(), anyString(),
+                eq(List.of("https://example.com/offer")));
+    }
 }
@@ -0,0 +1,114 @@
+package com.example.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import com.example.api.model.PhishingScanResult;
+import com.example.api.service.AiModelBatcher;
+import com.example.api.service.DomainReputation;
+import com.example.api.service.PhishingScannerServiceImpl;
+import com.example.api.service.SafeBrowsingBatcher;
+import com.example.api.service.SafeBrowsingLocalDatabase;
+import com.example.api.service.UrlScanPoller;
+import com.example.api.service.UrlVerdictCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhishingScannerServiceTest {
+
+    @Mock
+    private SafeBrowsingBatcher safeBrowsingBatcher;
+
+    @Mock
+    private UrlScanPoller urlScanPoller;
+
+    @Mock
+    private UrlVerdictCache urlVerdictCache;
+
+    @Mock
+    private SafeBrowsingLocalDatabase safeBrowsingDatabase;
+
+    @Mock
+    private DomainReputation domainReputation;
+
+    @Mock
+    private AiModelBatcher aiModelBatcher;
+
+    @InjectMocks
+    private PhishingScannerServiceImpl phishingScannerService;
+
+    // what each URLScan.io check answers with, standing in for the submission and the poller's result
+    private Supplier<CompletableFuture<Boolean>> urlScan;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(phishingScannerService, "maxConcurrentChecks", 3);
+        ReflectionTestUtils.setField(phishingScannerService, "checksDeadline", 5000L);
+
+        when(aiModelBatcher.analyze(any())).thenReturn(CompletableFuture.completedFuture(0f));
+        when(domainReputation.classify(any())).thenReturn(DomainReputation.Verdict.UNKNOWN);
+        when(safeBrowsingBatcher.lookup(any())).thenReturn(CompletableFuture.completedFuture(false));
+        when(urlVerdictCache.get(eq("safe-browsing"), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<CompletableFuture<Boolean>>>getArgument(2).get());
+        when(urlVerdictCache.get(eq("urlscan"), any(), any())).thenAnswer(invocation -> urlScan.get());
+    }
+
+    private static List<String> urls(int count) {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            urls.add("https://site" + i + ".example/");
+        }
+        return urls;
+    }
+
+    @Test
+    void scanEmail_ShouldKeepUrlScanChecksWithinConcurrencyCap() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger started = new AtomicInteger();
+        urlScan = () -> {
+            started.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+                return false;
+            }, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+        };
+
+        PhishingScanResult result = phishingScannerService.scanEmail("sender@example.com", "Hi", "text", urls(10));
+
+        assertEquals(10, started.get());
+        assertTrue(maxInFlight.get() <= 3, "max in flight " + maxInFlight.get());
+        assertTrue(result.getThreats().isEmpty(), result.getThreats().toString());
+    }
+
+    @Test
+    void scanEmail_ShouldReportChecksStillRunningAtDeadlineAsFailed() {
+        ReflectionTestUtils.setField(phishingScannerService, "checksDeadline", 200L);
+        List<CompletableFuture<Boolean>> running = new ArrayList<>();
+        urlScan = () -> {
+            CompletableFuture<Boolean> check = new CompletableFuture<>();
+            running.add(check);
+            return check;
+        };
+
+        long start = System.nanoTime();
+        PhishingScanResult result = phishingScannerService.scanEmail("sender@example.com", "Hi", "text", urls(1));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertEquals(List.of("URLScan check failed for URL: https://site0.example/"), result.getThreats());
+        assertTrue(running.getFirst().isCancelled());
+    }
+}
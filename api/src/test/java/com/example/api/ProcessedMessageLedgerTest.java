@@ -0,0 +1,95 @@
+package com.example.api;
+
+import java.util.Collection;
+import com.example.api.repository.ProcessedMessageRepository;
+import com.example.api.service.MessageDedupFilter;
+import com.example.api.service.ProcessedMessageLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessedMessageLedgerTest {
+
+    @Mock
+    private ProcessedMessageRepository processedMessageRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ProcessedMessageLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new ProcessedMessageLedger(processedMessageRepository, jdbcTemplate, 3, 1000);
+    }
+
+    @Test
+    void contains_ShouldSeePendingEntriesWithoutDatabase() {
+        ledger.record(1L, "test@example.com_<a@example.com>", 10L);
+
+        assertTrue(ledger.contains(1L, "test@example.com_<a@example.com>"));
+        verify(processedMessageRepository, never()).existsByMailboxIdAndMessageHash(anyLong(), anyLong());
+    }
+
+    @Test
+    void contains_ShouldFallBackToDatabase() {
+        long hash = MessageDedupFilter.hash("test@example.com_<a@example.com>");
+        when(processedMessageRepository.existsByMailboxIdAndMessageHash(1L, hash)).thenReturn(true);
+
+        assertTrue(ledger.contains(1L, "test@example.com_<a@example.com>"));
+        assertFalse(ledger.contains(2L, "test@example.com_<a@example.com>"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void record_ShouldWriteInBatches() {
+        ledger.record(1L, "m1", 10L);
+        ledger.record(1L, "m2", 11L);
+        verifyNoInteractions(jdbcTemplate);
+
+        ledger.record(1L, "m3", 12L);
+
+        ArgumentCaptor<Collection<Object>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture(), eq(3), any());
+        assertEquals(3, batch.getValue().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_ShouldWriteEachFingerprintOnce() {
+        ledger.record(1L, "m1", 10L);
+        ledger.record(1L, "m1", 10L);
+
+        ledger.flush();
+
+        ArgumentCaptor<Collection<Object>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture(), eq(3), any());
+        assertEquals(1, batch.getValue().size());
+    }
+
+    @Test
+    void flush_ShouldSkipFingerprintsAlreadyRecorded() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenThrow(new DuplicateKeyException("duplicate"));
+        when(jdbcTemplate.update(anyString(), eq(1L), eq(MessageDedupFilter.hash("m1")), any(), any()))
+                .thenThrow(new DuplicateKeyException("duplicate"));
+
+        ledger.record(1L, "m1", 10L);
+        ledger.record(1L, "m2", 11L);
+        ledger.flush();
+
+        verify(jdbcTemplate, times(2)).update(anyString(), any(), any(), any(), any());
+        ledger.flush();
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+        assertFalse(ledger.contains(1L, "m1"));
+    }
+}
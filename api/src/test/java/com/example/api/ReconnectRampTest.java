@@ -0,0 +1,34 @@
+package com.example.api;
+
+import java.util.Map;
+import com.example.api.service.ImapHostLimiter;
+import com.example.api.service.ReconnectRamp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconnectRampTest {
+
+    @Test
+    void reserve_ShouldSpaceSlotsPerHost() {
+        ReconnectRamp ramp = new ReconnectRamp(new ImapHostLimiter(200, 5, Map.of(), new SimpleMeterRegistry()));
+
+        long first = ramp.reserve("imap.gmail.com");
+        long second = ramp.reserve("imap.gmail.com");
+        long third = ramp.reserve("imap.gmail.com");
+
+        assertEquals(0, first);
+        assertTrue(second > 150 && second <= 200);
+        assertTrue(third > 350 && third <= 400);
+    }
+
+    @Test
+    void reserve_ShouldNotDelayOtherHosts() {
+        ReconnectRamp ramp = new ReconnectRamp(new ImapHostLimiter(200, 1, Map.of(), new SimpleMeterRegistry()));
+
+        ramp.reserve("imap.gmail.com");
+        ramp.reserve("imap.gmail.com");
+
+        assertEquals(0, ramp.reserve("imap.wp.pl"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.api;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import com.example.api.exception.SafeBrowsingApiException;
+import com.example.api.service.SafeBrowsingBatcher;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SafeBrowsingBatcherTest {
+
+    private static final String FLAGGED = "http://phishing.example.com/login";
+    private static final String CLEAN = "https://example.org";
+
+    private HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private int status = 200;
+    private SafeBrowsingBatcher batcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v4/threatMatches:find", exchange -> {
+            requests.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] body = ("{\"matches\": [{\"threatType\": \"SOCIAL_ENGINEERING\", \"threat\": {\"url\": \"" + FLAGGED + "\"}}]}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+        server.stop(0);
+    }
+
+    private SafeBrowsingBatcher batcher(long window, int size) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v4/threatMatches:find";
+        batcher = new SafeBrowsingBatcher(url, "key", window, size, new SimpleMeterRegistry());
+        return batcher;
+    }
+
+    @Test
+    void lookup_ShouldShareOneRequestWithinWindow() throws Exception {
+        batcher(200, 500);
+
+        CompletableFuture<Boolean> flagged = batcher.lookup(FLAGGED);
+        CompletableFuture<Boolean> clean = batcher.lookup(CLEAN);
+        CompletableFuture<Boolean> flaggedAgain = batcher.lookup(FLAGGED);
+
+        assertTrue(flagged.get(5, TimeUnit.SECONDS));
+        assertFalse(clean.get(5, TimeUnit.SECONDS));
+        assertTrue(flaggedAgain.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.size());
+        assertEquals(2, requests.getFirst().split("\"url\"").length - 1);
+    }
+
+    @Test
+    void lookup_ShouldSendFullBatchWithoutWaitingForWindow() throws Exception {
+        batcher(60000, 2);
+
+        CompletableFuture<Boolean> flagged = batcher.lookup(FLAGGED);
+        CompletableFuture<Boolean> clean = batcher.lookup(CLEAN);
+
+        assertTrue(flagged.get(5, TimeUnit.SECONDS));
+        assertFalse(clean.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void lookup_ShouldFailEveryCallerWhenBatchFails() {
+        status = 503;
+        batcher(50, 500);
+
+        CompletableFuture<Boolean> flagged = batcher.lookup(FLAGGED);
+        CompletableFuture<Boolean> clean = batcher.lookup(CLEAN);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> flagged.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SafeBrowsingApiException.class, e.getCause());
+        assertThrows(ExecutionException.class, () -> clean.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.example.api.service.SafeBrowsingLocalDatabase;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SafeBrowsingLocalDatabaseTest {
+
+    private HttpServer server;
+    private volatile String listUpdate;
+    private final List<String> updateRequests = new CopyOnWriteArrayList<>();
+    private volatile String listedExpression = "evil.example.com/";
+    private volatile String cacheDuration = "300s";
+    private final AtomicInteger fullHashRequests = new AtomicInteger();
+    private SafeBrowsingLocalDatabase database;
+
+    private static byte[] sha256(String expression) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(expression.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    // sorted 4-byte prefixes of the expressions, concatenated
+    private static byte[] prefixes(String... expressions) throws Exception {
+        byte[][] prefixes = new byte[expressions.length][];
+        for (int i = 0; i < expressions.length; i++) {
+            prefixes[i] = Arrays.copyOf(sha256(expressions[i]), 4);
+        }
+        Arrays.sort(prefixes, Arrays::compareUnsigned);
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+        for (byte[] prefix : prefixes) {
+            concatenated.writeBytes(prefix);
+        }
+        return concatenated.toByteArray();
+    }
+
+    private static String update(String responseType, String removals, byte[] additions, byte[] expectedList) throws Exception {
+        return """
+                {"listUpdateResponses": [{
+                    "threatType": "SOCIAL_ENGINEERING", "threatEntryType": "URL", "platformType": "ANY_PLATFORM",
+                    "responseType": "%s",
+                    "additions": [{"compressionType": "RAW", "rawHashes": {"prefixSize": 4, "rawHashes": "%s"}}],
+                    "removals": [{"compressionType": "RAW", "rawIndices": {"indices": [%s]}}],
+                    "newClientState": "state-%s",
+                    "checksum": {"sha256": "%s"}
+                }], "minimumWaitDuration": "0s"}
+                """.formatted(responseType, base64(additions), removals, responseType,
+                base64(MessageDigest.getInstance("SHA-256").digest(expectedList)));
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v4/threatListUpdates:fetch", exchange -> {
+            updateRequests.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            respond(exchange, listUpdate);
+        });
+        server.createContext("/v4/fullHashes:find", exchange -> {
+            fullHashRequests.incrementAndGet();
+            try {
+                respond(exchange, """
+                        {"matches": [{"threatType": "SOCIAL_ENGINEERING", "platformType": "ANY_PLATFORM",
+                            "threatEntryType": "URL", "threat": {"hash": "%s"}, "cacheDuration": "%s"}],
+                         "negativeCacheDuration": "300s"}
+                        """.formatted(base64(sha256(listedExpression)), cacheDuration));
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        });
+        server.start();
+
+        database = database(0);
+    }
+
+    private SafeBrowsingLocalDatabase database(long updateInterval) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v4";
+        return new SafeBrowsingLocalDatabase(url, "key", true, updateInterval, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    @Test
+    void lookup_ShouldConfirmPrefixHitsWithFullHashOnce() throws Exception {
+        byte[] list = prefixes("evil.example.com/", "phish.example.net/", "malware.example.org/download/");
+        listUpdate = update("FULL_UPDATE", "", list, list);
+
+        database.updateIfDue();
+
+        assertTrue(database.isReady());
+        assertEquals(3, database.size());
+        assertTrue(database.lookup("https://login.evil.example.com/account?id=1").get(5, TimeUnit.SECONDS));
+        assertTrue(database.lookup("https://evil.example.com/").get(5, TimeUnit.SECONDS));
+        assertEquals(1, fullHashRequests.get());
+    }
+
+    @Test
+    void lookup_ShouldAnswerCleanUrlsLocally() throws Exception {
+        byte[] list = prefixes("evil.example.com/", "phish.example.net/");
+        listUpdate = update("FULL_UPDATE", "", list, list);
+        database.updateIfDue();
+
+        assertTrue(database.lookup("https://good.example.org/news").isDone());
+        assertFalse(database.lookup("https://good.example.org/news").get());
+        assertEquals(0, fullHashRequests.get());
+    }
+
+    @Test
+    void updateIfDue_ShouldApplyPartialUpdateRemovals() throws Exception {
+        byte[] list = prefixes("evil.example.com/", "phish.example.net/");
+        listUpdate = update("FULL_UPDATE", "", list, list);
+        database.updateIfDue();
+
+        byte[] added = prefixes("malware.example.org/");
+        byte[] expected = prefixes("evil.example.com/", "malware.example.org/");
+        int phishIndex = Arrays.equals(Arrays.copyOf(list, 4), Arrays.copyOf(sha256("phish.example.net/"), 4)) ? 0 : 1;
+        listUpdate = update("PARTIAL_UPDATE", String.valueOf(phishIndex), added, expected);
+        database.updateIfDue();
+
+        assertEquals(2, database.size());
+        assertFalse(database.lookup("https://phish.example.net/").get(5, TimeUnit.SECONDS));
+        assertEquals(0, fullHashRequests.get());
+    }
+
+    @Test
+    void updateIfDue_ShouldNotBeReadyWhileListFailsChecksum() throws Exception {
+        database = database(TimeUnit.HOURS.toMillis(1));
+        byte[] list = prefixes("evil.example.com/", "phish.example.net/");
+        listUpdate = update("FULL_UPDATE", "", list, prefixes("evil.example.com/"));
+
+        database.updateIfDue();
+
+        assertEquals(0, database.size());
+        assertFalse(database.isReady());
+
+        // retried right away rather than after the update interval
+        listUpdate = update("FULL_UPDATE", "", list, list);
+        database.updateIfDue();
+
+        assertEquals(2, updateRequests.size());
+        assertTrue(database.isReady());
+        assertEquals(2, database.size());
+    }
+
+    @Test
+    void updateIfDue_ShouldKeepListAndRequestFullUpdateOnChecksumMismatch() throws Exception {
+        byte[] list = prefixes("evil.example.com/", "phish.example.net/");
+        listUpdate = update("FULL_UPDATE", "", list, list);
+        database.updateIfDue();
+
+        listUpdate = update("PARTIAL_UPDATE", "", prefixes("malware.example.org/"), list);
+        database.updateIfDue();
+
+        // the previous prefixes stay in use until the full update replaces them
+        assertTrue(database.isReady());
+        assertEquals(2, database.size());
+        assertTrue(database.lookup("https://evil.example.com/").get(5, TimeUnit.SECONDS));
+
+        listUpdate = update("FULL_UPDATE", "", list, list);
+        database.updateIfDue();
+
+        assertEquals(3, updateRequests.size());
+        assertTrue(updateRequests.get(2).contains("\"state\":\"\""));
+    }
+
+    @Test
+    void lookup_ShouldCanonicalizeUrlsBeforeHashing() throws Exception {
+        byte[] list = prefixes("evil.example.com/login/", "195.127.0.11/");
+        listUpdate = update("FULL_UPDATE", "", list, list);
+        database.updateIfDue();
+
+        listedExpression = "evil.example.com/login/";
+        assertTrue(database.lookup("http://EVIL.example.com./%256Cogin/./a/..//#top").get(5, TimeUnit.SECONDS));
+        listedExpression = "195.127.0.11/";
+        assertTrue(database.lookup("http://3279880203/").get(5, TimeUnit.SECONDS));
+        assertTrue(database.lookup("http://0xc3.0177.0x0.11:8080/").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lookup_ShouldNotNegativeCachePrefixesOfListedHashes() throws Exception {
+        cacheDuration = "0s";
+        byte[] list = prefixes("evil.example.com/");
+        listUpdate = update("FULL_UPDATE", "", list, list);
+        database.updateIfDue();
+
+        assertTrue(database.lookup("https://evil.example.com/").get(5, TimeUnit.SECONDS));
+        Thread.sleep(5);
+        // the full hash was cached for no time at all, so its prefix has to be asked about again
+        assertTrue(database.lookup("https://evil.example.com/").get(5, TimeUnit.SECONDS));
+        assertEquals(2, fullHashRequests.get());
+    }
+}
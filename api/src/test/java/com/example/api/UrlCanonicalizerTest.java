@@ -0,0 +1,57 @@
+package com.example.api;
+
+import java.util.List;
+import java.util.Optional;
+import com.example.api.service.UrlCanonicalizer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlCanonicalizerTest {
+
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(List.of("utm_*", "fbclid", "gclid"));
+
+    @Test
+    void canonicalize_ShouldNormalizeSchemeHostAndPort() {
+        assertEquals(Optional.of("https://example.com/Login"), canonicalizer.canonicalize("HTTPS://Example.COM:443/Login"));
+        assertEquals(Optional.of("http://example.com:8080/"), canonicalizer.canonicalize("http://example.com.:8080"));
+        assertEquals(Optional.of("http://www.example.com/"), canonicalizer.canonicalize("www.example.com"));
+    }
+
+    @Test
+    void canonicalize_ShouldConvertIdnHostToPunycode() {
+        assertEquals(Optional.of("https://xn--pypal-4ve.com/"), canonicalizer.canonicalize("https://p\u0430ypal.com/"));
+    }
+
+    @Test
+    void canonicalize_ShouldNormalizePercentEncodingAndDotSegments() {
+        assertEquals(Optional.of("https://example.com/a%2Fb/~user/c%20d"),
+                canonicalizer.canonicalize("https://example.com/x/../a%2fb/%7Euser/c d"));
+    }
+
+    @Test
+    void canonicalize_ShouldStripTrackingParametersAndFragment() {
+        assertEquals(Optional.of("https://example.com/offer?id=7"),
+                canonicalizer.canonicalize("https://example.com/offer?utm_source=news&id=7&UTM_Medium=email&gclid=x#section"));
+        assertEquals(Optional.of("https://example.com/offer"),
+                canonicalizer.canonicalize("https://example.com/offer?fbclid=abc"));
+    }
+
+    @Test
+    void canonicalize_ShouldSkipUnscannableLinks() {
+        assertTrue(canonicalizer.canonicalize("mailto:support@example.com").isEmpty());
+        assertTrue(canonicalizer.canonicalize("#footer").isEmpty());
+        assertTrue(canonicalizer.canonicalize("/relative/path").isEmpty());
+        assertTrue(canonicalizer.canonicalize("javascript:void(0)").isEmpty());
+    }
+
+    @Test
+    void canonicalize_ShouldDeduplicateInFirstSeenOrder() {
+        List<String> urls = canonicalizer.canonicalize(List.of(
+                "https://b.example.com/",
+                "https://A.example.com?utm_campaign=x",
+                "https://b.example.com:443/#top",
+                "mailto:a@example.com"));
+
+        assertEquals(List.of("https://b.example.com/", "https://a.example.com/"), urls);
+    }
+}
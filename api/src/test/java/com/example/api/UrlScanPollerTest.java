@@ -0,0 +1,114 @@
+package com.example.api;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import com.example.api.exception.UrlScanApiException;
+import com.example.api.service.UrlScanPoller;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlScanPollerTest {
+
+    private static final String MALICIOUS = "0b7a1c2e-0000-4000-8000-000000000001";
+    private static final String BENIGN = "0b7a1c2e-0000-4000-8000-000000000002";
+
+    private HttpServer server;
+    private final Set<String> finished = ConcurrentHashMap.newKeySet();
+    private final List<String> searches = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v1/search/", exchange -> {
+            searches.add(exchange.getRequestURI().getQuery());
+            String results = String.join(",", finished.stream()
+                    .map(uuid -> "{\"task\": {\"uuid\": \"" + uuid + "\"}}")
+                    .toList());
+            respond(exchange, 200, "{\"results\": [" + results + "]}");
+        });
+        server.createContext("/api/v1/result/", exchange -> {
+            String categories = exchange.getRequestURI().getPath().contains(MALICIOUS) ? "\"phishing\"" : "";
+            respond(exchange, 200, "{\"verdicts\": {\"urlscan\": {\"categories\": [" + categories + "]}}}");
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private UrlScanPoller poller(long maxWait) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1";
+        return new UrlScanPoller(url, "key", 0, 10, maxWait, 90000, new SimpleMeterRegistry());
+    }
+
+    private static void pollUntilDone(UrlScanPoller poller, CompletableFuture<?>... futures) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!CompletableFuture.allOf(futures).isDone() && System.currentTimeMillis() < deadline) {
+            poller.poll();
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void poll_ShouldResolveFinishedScansWithOneSearch() throws Exception {
+        UrlScanPoller poller = poller(60000);
+        finished.addAll(List.of(MALICIOUS, BENIGN));
+
+        CompletableFuture<Boolean> malicious = poller.await(MALICIOUS);
+        CompletableFuture<Boolean> benign = poller.await(BENIGN);
+        pollUntilDone(poller, malicious, benign);
+
+        assertTrue(malicious.getNow(null));
+        assertFalse(benign.getNow(null));
+        assertEquals(1, searches.size());
+        assertTrue(searches.getFirst().contains(MALICIOUS) && searches.getFirst().contains(BENIGN));
+    }
+
+    @Test
+    void poll_ShouldKeepWaitingUntilScanFinishes() throws Exception {
+        UrlScanPoller poller = poller(60000);
+
+        CompletableFuture<Boolean> malicious = poller.await(MALICIOUS);
+        poller.poll();
+        Thread.sleep(100);
+        assertFalse(malicious.isDone());
+
+        finished.add(MALICIOUS);
+        pollUntilDone(poller, malicious);
+
+        assertTrue(malicious.getNow(null));
+        assertEquals(0, poller.size());
+    }
+
+    @Test
+    void poll_ShouldGiveUpAfterMaxWait() throws Exception {
+        UrlScanPoller poller = poller(50);
+
+        CompletableFuture<Boolean> benign = poller.await(BENIGN);
+        pollUntilDone(poller, benign);
+
+        ExecutionException e = assertThrows(ExecutionException.class, benign::get);
+        assertInstanceOf(UrlScanApiException.class, e.getCause());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.api;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.example.api.exception.SafeBrowsingApiException;
+import com.example.api.model.UrlVerdict;
+import com.example.api.repository.UrlVerdictRepository;
+import com.example.api.service.UrlCanonicalizer;
+import com.example.api.service.UrlVerdictCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UrlVerdictCacheTest {
+
+    private static final String URL = "https://Example.com/login?id=1";
+
+    @Mock
+    private UrlVerdictRepository urlVerdictRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UrlVerdictCache cache;
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new UrlVerdictCache(urlVerdictRepository, new UrlCanonicalizer(List.of("utm_*")), 100, 60000, 10000, meterRegistry);
+    }
+
+    private CompletableFuture<Boolean> lookup(boolean malicious) {
+        lookups.incrementAndGet();
+        return CompletableFuture.completedFuture(malicious);
+    }
+
+    @Test
+    void get_ShouldLookUpOnceAndServeFromMemory() {
+        when(urlVerdictRepository.findById(anyString())).thenReturn(Optional.empty());
+
+        assertTrue(cache.get("safe-browsing", URL, () -> lookup(true)).join());
+        assertTrue(cache.get("safe-browsing", "https://example.com/login?id=1#top", () -> lookup(true)).join());
+        assertTrue(cache.get("safe-browsing", "HTTPS://example.com:443/login?id=1&utm_source=mail", () -> lookup(true)).join());
+
+        assertEquals(1, lookups.get());
+        verify(urlVerdictRepository, times(1)).findById(anyString());
+        assertEquals(2, meterRegistry.get("verdict.cache.hits").tag("tier", "memory").counter().count());
+    }
+
+    @Test
+    void get_ShouldCacheCleanVerdictsWithShorterTtl() {
+        when(urlVerdictRepository.findById(anyString())).thenReturn(Optional.empty());
+        ArgumentCaptor<UrlVerdict> saved = ArgumentCaptor.forClass(UrlVerdict.class);
+
+        cache.get("urlscan", URL, () -> lookup(false)).join();
+
+        verify(urlVerdictRepository).save(saved.capture());
+        assertFalse(saved.getValue().isMalicious());
+        long ttl = saved.getValue().getExpiresAt().getTime() - System.currentTimeMillis();
+        assertTrue(ttl > 0 && ttl <= 10000);
+    }
+
+    @Test
+    void get_ShouldServeFromDatabaseAfterRestart() {
+        UrlVerdict stored = new UrlVerdict("key", "safe-browsing", URL, true, 250, new Date(System.currentTimeMillis() + 60000));
+        when(urlVerdictRepository.findById(anyString())).thenReturn(Optional.of(stored));
+
+        assertTrue(cache.get("safe-browsing", URL, () -> lookup(false)).join());
+
+        assertEquals(0, lookups.get());
+        verify(urlVerdictRepository, never()).save(any());
+    }
+
+    @Test
+    void get_ShouldShareInFlightLookup() {
+        when(urlVerdictRepository.findById(anyString())).thenReturn(Optional.empty());
+        CompletableFuture<Boolean> remote = new CompletableFuture<>();
+
+        CompletableFuture<Boolean> first = cache.get("urlscan", URL, () -> {
+            lookups.incrementAndGet();
+            return remote;
+        });
+        CompletableFuture<Boolean> second = cache.get("urlscan", URL, () -> lookup(false));
+        first.cancel(true);
+        remote.complete(true);
+
+        assertTrue(second.join());
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    void get_ShouldNotCacheFailures() {
+        when(urlVerdictRepository.findById(anyString())).thenReturn(Optional.empty());
+
+        CompletableFuture<Boolean> failed = cache.get("safe-browsing", URL,
+                () -> CompletableFuture.failedFuture(new SafeBrowsingApiException("quota exceeded")));
+        assertTrue(failed.isCompletedExceptionally());
+
+        assertFalse(cache.get("safe-browsing", URL, () -> lookup(false)).join());
+        assertEquals(1, lookups.get());
+        verify(urlVerdictRepository, times(1)).save(any());
+    }
+
+    @Test
+    void get_ShouldTruncateOverLongUrlsWhenPersisting() {
+        when(urlVerdictRepository.findById(anyString())).thenReturn(Optional.empty());
+        String longUrl = "https://example.com/" + "a".repeat(UrlVerdict.URL_LENGTH);
+
+        assertFalse(cache.get("safe-browsing", longUrl, () -> lookup(false)).join());
+
+        ArgumentCaptor<UrlVerdict> saved = ArgumentCaptor.forClass(UrlVerdict.class);
+        verify(urlVerdictRepository).save(saved.capture());
+        assertEquals(UrlVerdict.URL_LENGTH, saved.getValue().getUrl().length());
+        assertEquals(64, saved.getValue().getVerdictKey().length());
+    }
+}